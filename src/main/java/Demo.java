@@ -2,6 +2,7 @@ import org.logicng.formulas.FormulaFactory;
 import org.variantsync.boosting.TraceBoosting;
 import org.variantsync.boosting.datastructure.ASTNode;
 import org.variantsync.boosting.datastructure.Feature;
+import org.variantsync.boosting.datastructure.FeatureIndex;
 import org.variantsync.boosting.datastructure.MainTree;
 import org.variantsync.boosting.parsing.ESupportedLanguages;
 import org.variantsync.boosting.product.Variant;
@@ -45,6 +46,12 @@ public class Demo {
             }
         }
 
+        // look up the nodes of a single feature through an index of the mappings
+        FeatureIndex featureIndex = new FeatureIndex(tree);
+        for (ASTNode n : featureIndex.getNodes("E")) {
+            System.out.println("E: " + n.getCode());
+        }
+
     }
 
     private static List<VariantPassport> createVariantPassports() {
@@ -1,20 +1,20 @@
 package org.variantsync.boosting;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -40,11 +40,19 @@ import org.variantsync.boosting.datastructure.Module;
 import org.variantsync.boosting.parsing.AbstractAST;
 import org.variantsync.boosting.parsing.CAST;
 import org.variantsync.boosting.parsing.ESupportedLanguages;
+import org.variantsync.boosting.parsing.GitRepository;
+import org.variantsync.boosting.parsing.IngestionFilter;
 import org.variantsync.boosting.parsing.JavaAST;
+import org.variantsync.boosting.parsing.JavaSourceParser;
 import org.variantsync.boosting.parsing.LineAST;
+import org.variantsync.boosting.parsing.ParseCache;
+import org.variantsync.boosting.parsing.ParseOptions;
+import org.variantsync.boosting.persistence.Checkpoint;
+import org.variantsync.boosting.persistence.MainTreeCodec;
 import org.variantsync.boosting.product.Variant;
 import org.variantsync.boosting.product.VariantInitTask;
 import org.variantsync.boosting.product.VariantPassport;
+import org.variantsync.boosting.product.VariantValidation;
 
 
 /**
@@ -126,6 +134,11 @@ public class TraceBoosting {
     private int nThreads = Runtime.getRuntime().availableProcessors();
     private final List<VariantPassport> sourceLocations;
     private final ESupportedLanguages targetLanguage;
+    // number of merged variants after which a checkpoint is written; 0 disables checkpoints
+    private int checkpointInterval = 0;
+    // whether the computed mappings are checked by reproducing the variants from them
+    private boolean mappingValidation = false;
+    private List<VariantValidation> validationResults = Collections.emptyList();
 
     /*
      * Set mapping_calculation to "CNF".
@@ -140,6 +153,11 @@ public class TraceBoosting {
     private final Path workingDir;
     private final List<VariantInitTask> productInitTasks;
     private final List<Variant> variants = new ArrayList<>();
+    // files with the same content are parsed only once while the variants are initialized
+    private final ParseCache parseCache = new ParseCache();
+    private final ParseOptions parseOptions = new ParseOptions();
+    // maximum size of the parse cache on disk in bytes; 0, the default, disables it
+    private long parseCacheSize = 0;
 
     public TraceBoosting(final List<VariantPassport> sourceLocations, final Path workingDir,
                          final ESupportedLanguages targetLanguage) {
@@ -147,6 +165,7 @@ public class TraceBoosting {
         this.targetLanguage = targetLanguage;
         this.workingDir = workingDir;
         setPaths("input", "input", "results", "result");
+        this.parseOptions.setParseCache(parseCache);
         this.productInitTasks = initialize();
     }
 
@@ -162,29 +181,129 @@ public class TraceBoosting {
     }
 
     /**
-     * Loads the main tree from the specified folder.
+     * Sets the number of variants after which the state of the association extraction is saved to a checkpoint.
+     * A long-running extraction can then be continued with {@link #resumeMappings()} after a crash.
+     *
+     * @param checkpointInterval the number of merged variants between two checkpoints, or 0 to disable checkpoints
+     * @throws IllegalArgumentException if the interval is negative
+     */
+    public void setCheckpointInterval(final int checkpointInterval) {
+        if (checkpointInterval < 0) {
+            throw new IllegalArgumentException("The checkpoint interval must not be negative: " + checkpointInterval);
+        }
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Sets whether the computed mappings are validated at the end of {@link #computeMappings()} by reproducing the
+     * variants from them (see {@link #validateMappings(MainTree)}).
+     *
+     * @param mappingValidation true to validate the mappings
+     */
+    public void setMappingValidation(final boolean mappingValidation) {
+        this.mappingValidation = mappingValidation;
+    }
+
+    /**
+     * Returns the results of the latest validation of the mappings.
+     *
+     * @return the result for each variant, in the order of the variants, or an empty list if the mappings have
+     * not been validated
+     */
+    public List<VariantValidation> getValidationResults() {
+        return validationResults;
+    }
+
+    /**
+     * Returns the file to which checkpoints of the association extraction are written.
+     *
+     * @return the path of the checkpoint file in the input folder
+     */
+    public Path getCheckpointFile() {
+        return Paths.get(inputFolder, "checkpoint.ckpt");
+    }
+
+    /**
+     * Sets the maximum size of the parse cache on disk, which keeps parsed file contents across runs in the input
+     * folder. When the cache grows larger, the least recently used contents are deleted. The cache on disk is
+     * disabled by default.
+     *
+     * @param parseCacheSize the maximum size in bytes, e.g., {@code 1L << 30} for 1 GB, or 0 to disable the parse
+     *                       cache on disk
+     * @throws IllegalArgumentException if the size is negative
+     */
+    public void setParseCacheSize(final long parseCacheSize) {
+        if (parseCacheSize < 0) {
+            throw new IllegalArgumentException("The parse cache size must not be negative: " + parseCacheSize);
+        }
+        this.parseCacheSize = parseCacheSize;
+    }
+
+    /**
+     * Sets whether the code of Java nodes is sliced from the source files instead of being pretty-printed by
+     * JavaParser, which is much faster for large variants. Main trees created in different modes cannot be
+     * combined, as the code of their nodes differs.
+     *
+     * @param sourceSliceText true to slice the code from the source files
+     * @see ParseOptions#setSourceSliceText(boolean)
+     */
+    public void setSourceSliceText(final boolean sourceSliceText) {
+        this.parseOptions.setSourceSliceText(sourceSliceText);
+    }
+
+    /**
+     * Sets whether the files of each variant are parsed in parallel, in addition to parsing the variants in
+     * parallel.
+     *
+     * @param parallelFiles true to parse the files of each variant in parallel
+     * @see ParseOptions#setParallelFiles(boolean)
+     */
+    public void setParallelFileParsing(final boolean parallelFiles) {
+        this.parseOptions.setParallelFiles(parallelFiles);
+    }
+
+    /**
+     * Sets the filter that decides which files of the variants are ingested, e.g., to skip vendored folders,
+     * generated sources, huge files, and binaries. Variant passports with their own filter are not affected.
+     *
+     * @param ingestionFilter the filter, or null to ingest every file
+     * @see IngestionFilter
+     */
+    public void setIngestionFilter(final IngestionFilter ingestionFilter) {
+        this.parseOptions.setIngestionFilter(ingestionFilter);
+    }
+
+    /**
+     * Returns the folder in which parsed file contents are cached across runs.
+     *
+     * @return the path of the parse cache in the input folder
+     */
+    public Path getParseCacheFolder() {
+        return Paths.get(inputFolder, "parse-cache");
+    }
+
+    /**
+     * Loads the main tree from the specified folder, in the binary format of {@link MainTreeCodec}.
      *
      * @param folderName the name of the folder containing the main tree file
      * @return the MainTree object loaded from the file
-     * @throws UncheckedIOException if an IOException occurs while reading the file
-     * @throws RuntimeException     if the MainTree class is not found
+     * @throws UncheckedIOException if an IOException occurs while reading the file, e.g., if it is not in the
+     *                              binary format
      */
     public static MainTree loadMainTree(final String folderName) {
         final String filePath = folderName + "/main-tree.ast";
         Logger.info("Loading main tree from " + filePath);
-        try (final ObjectInputStream in = new ObjectInputStream(new FileInputStream(filePath))) {
-            return (MainTree) in.readObject();
+        try {
+            return MainTreeCodec.read(Paths.get(filePath));
         } catch (final IOException e) {
             Logger.error("Was not able to read file: ", e);
             throw new UncheckedIOException(e);
-        } catch (final ClassNotFoundException e) {
-            Logger.error("MainTree class not found", e);
-            throw new RuntimeException(e);
         }
     }
 
     /**
-     * Saves the main tree object to a file in the specified folder.
+     * Saves the main tree object to a file in the specified folder, using the binary format of
+     * {@link MainTreeCodec}.
      *
      * @param mainTree   The MainTree object to be saved
      * @param folderName The name of the folder where the file will be saved
@@ -200,10 +319,10 @@ public class TraceBoosting {
             Logger.error("Was not able to create directories for " + folderName, e);
             throw new UncheckedIOException(e);
         }
-        try (final ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(filePath))) {
-            out.writeObject(mainTree);
+        try {
+            MainTreeCodec.write(mainTree, Paths.get(filePath));
         } catch (final IOException e) {
-            Logger.error("Was not able to write products to " + filePath, e);
+            Logger.error("Was not able to write main tree to " + filePath, e);
             throw new UncheckedIOException(e);
         }
     }
@@ -211,6 +330,8 @@ public class TraceBoosting {
     public List<Variant> getVariants() {
         // Multi-threaded loading of products
         if (!this.productInitTasks.isEmpty()) {
+            parseCache.setDiskCache(getParseCacheFolder(), parseCacheSize);
+            JavaSourceParser.resetStatistics();
             ExecutorService threadPool = Executors.newFixedThreadPool(this.nThreads);
             try {
                 // Finish all product initialization tasks and store the products
@@ -226,12 +347,53 @@ public class TraceBoosting {
                 });
             } finally {
                 threadPool.shutdown();
+                closeRepositories();
+            }
+            Logger.info("Parsed " + parseCache.getParsedFiles() + " distinct files, loaded "
+                    + parseCache.getLoadedFiles() + " from the parse cache, and reused the parsed content of "
+                    + parseCache.getReusedFiles() + " files.");
+            if (JavaSourceParser.getParsedFiles() > 0) {
+                Logger.info("Parsed " + JavaSourceParser.getParsedFiles() + " Java files in "
+                        + JavaSourceParser.getParseTimeNanos() / 1_000_000 + " ms (summed over all threads).");
             }
+            parseCache.clear();
+            logSkippedFiles();
         }
         this.productInitTasks.clear();
         return this.variants;
     }
 
+    // the contents of all revisions have been read once the variants are parsed, so the git processes are stopped
+    private void closeRepositories() {
+        final Set<GitRepository> repositories = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (final VariantPassport passport : sourceLocations) {
+            if (passport.getGitRevision() != null) {
+                repositories.add(passport.getGitRevision().getRepository());
+            }
+        }
+        repositories.forEach(GitRepository::close);
+    }
+
+    private void logSkippedFiles() {
+        final Set<IngestionFilter> filters = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (parseOptions.getIngestionFilter() != null) {
+            filters.add(parseOptions.getIngestionFilter());
+        }
+        for (final VariantPassport passport : sourceLocations) {
+            if (passport.getIngestionFilter() != null) {
+                filters.add(passport.getIngestionFilter());
+            }
+        }
+        final Map<IngestionFilter.Reason, Long> skipped = new EnumMap<>(IngestionFilter.Reason.class);
+        for (final IngestionFilter filter : filters) {
+            for (final IngestionFilter.SkippedFile skippedFile : filter.getSkippedFiles()) {
+                skipped.merge(skippedFile.getReason(), 1L, Long::sum);
+            }
+        }
+        if (!skipped.isEmpty()) {
+            Logger.info("Skipped files and folders while parsing the variants: " + skipped);
+        }
+    }
 
     /**
      * Initializes the products by creating them from variants and configuration
@@ -262,30 +424,39 @@ public class TraceBoosting {
      * @throws IllegalStateException if an unexpected target language is provided
      */
     public MainTree computeMappings() {
-        // Initialize variables
-        allFeatures = new CustomHashSet<>();
-        final AbstractAST mainAST;
+        return computeMappings(null);
+    }
 
-        // Determine mainAST based on targetLanguage
-        switch (targetLanguage) {
-            case C:
-                mainAST = new CAST();
-                break;
-            case JAVA:
-                mainAST = new JavaAST();
-                break;
-            case LINES:
-                mainAST = new LineAST();
-                break;
-            default:
-                throw new IllegalStateException("Unexpected value: " + targetLanguage);
+    /**
+     * Computes mappings like {@link #computeMappings()}, but continues from the latest checkpoint, if one exists.
+     * The variants of this instance must start with the variants that had been processed when the checkpoint was
+     * written, in the same order.
+     *
+     * @return MainTree object containing the mappings
+     * @throws IllegalStateException if the checkpoint does not match the variants of this instance
+     */
+    public MainTree resumeMappings() {
+        final Path checkpointFile = getCheckpointFile();
+        if (!Files.exists(checkpointFile)) {
+            Logger.info("No checkpoint found at " + checkpointFile + ", starting from scratch.");
+            return computeMappings(null);
         }
+        return computeMappings(Checkpoint.loadCheckpoint(checkpointFile));
+    }
 
-        // Create MainTree object with mainAST
-        final MainTree mainTree = new MainTree(mainAST);
+    private MainTree computeMappings(final Checkpoint checkpoint) {
+        final MainTree mainTree;
+        if (checkpoint == null) {
+            // Initialize variables
+            allFeatures = new CustomHashSet<>();
+            mainTree = new MainTree(createMainAST());
+        } else {
+            allFeatures = checkpoint.getAllFeatures();
+            mainTree = checkpoint.getMainTree();
+        }
 
         // Extract associations using traceExtractionAlgorithm
-        final CustomHashSet<Association> associations = extractAssociationsComparisonBased(mainTree);
+        final CustomHashSet<Association> associations = extractAssociationsComparisonBased(mainTree, checkpoint);
 
         // Assign proactive traces to associations
         propagateProactiveTraces(associations);
@@ -307,10 +478,136 @@ public class TraceBoosting {
         }
         Logger.info("Mapping translation complete.");
 
+        // The extraction is complete, so an existing checkpoint is outdated
+        if (checkpointInterval > 0 || checkpoint != null) {
+            discardCheckpoint();
+        }
+
+        if (mappingValidation) {
+            validationResults = validateMappings(mainTree);
+        }
+
         // Return MainTree object with mapped ASTs
         return mainTree;
     }
 
+    /**
+     * Validates the mappings of a main tree by reproducing the variants from them: the configuration of each variant
+     * is projected through the mappings (see {@link Projector}), and the selected nodes are compared to the main
+     * tree nodes that correspond to the nodes of the variant (see {@link Variant#getAstNodesMainTree()}).
+     * <p>
+     * The configurations are projected in groups of 64 in parallel, with the number of threads of this instance.
+     *
+     * @param mainTree the main tree with the computed mappings
+     * @return the result for each variant, in the order of the variants
+     * @throws IllegalStateException if a variant has not been merged into the main tree
+     */
+    public List<VariantValidation> validateMappings(final MainTree mainTree) {
+        final long start = System.nanoTime();
+        final List<Variant> variants = this.getVariants();
+        final Projector projector = new Projector(mainTree);
+        final ExecutorService threadPool = Executors.newFixedThreadPool(nThreads);
+        final List<Future<List<VariantValidation>>> futures = new ArrayList<>();
+        for (int first = 0; first < variants.size(); first += Long.SIZE) {
+            final List<Variant> group = variants.subList(first, Math.min(first + Long.SIZE, variants.size()));
+            futures.add(threadPool.submit(() -> validateVariants(projector, group)));
+        }
+        final List<VariantValidation> results = new ArrayList<>(variants.size());
+        try {
+            for (final Future<List<VariantValidation>> future : futures) {
+                results.addAll(future.get());
+            }
+        } catch (final InterruptedException | ExecutionException e) {
+            Logger.error("Was not able to validate the mappings", e);
+            throw new RuntimeException(e);
+        } finally {
+            threadPool.shutdown();
+        }
+        int reproduced = 0;
+        for (final VariantValidation result : results) {
+            if (result.isReproduced()) {
+                reproduced++;
+            } else {
+                Logger.warn("Mappings do not reproduce variant " + result);
+            }
+        }
+        Logger.info("Mappings reproduce " + reproduced + " of " + results.size() + " variants ("
+                + projector.getNumberOfMappings() + " distinct mappings, validated in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms).");
+        return results;
+    }
+
+    private static List<VariantValidation> validateVariants(final Projector projector, final List<Variant> group) {
+        final List<CustomHashSet<Feature>> configurations = new ArrayList<>(group.size());
+        for (final Variant variant : group) {
+            configurations.add(variant.getFeatures());
+        }
+        final List<BitSet> projections = projector.projectAll(configurations);
+        final NodeArray nodes = projector.getMainTree().getTree().getAstNodes();
+        final List<VariantValidation> results = new ArrayList<>(group.size());
+        for (int i = 0; i < group.size(); i++) {
+            final Variant variant = group.get(i);
+            if (variant.getAstNodesMainTree() == null) {
+                throw new IllegalStateException("Variant " + variant.getName() + " has not been merged");
+            }
+            final BitSet projection = projections.get(i);
+            final List<ASTNode> falseNegatives = new ArrayList<>();
+            for (final ASTNode node : variant.getAstNodesMainTree()) {
+                // clearing the nodes of the variant leaves the false positives
+                if (!projection.get(node.getId())) {
+                    falseNegatives.add(node);
+                }
+                projection.clear(node.getId());
+            }
+            falseNegatives.sort(Comparator.comparingInt(ASTNode::getId));
+            final List<ASTNode> falsePositives = new ArrayList<>(projection.cardinality());
+            for (int id = projection.nextSetBit(0); id >= 0; id = projection.nextSetBit(id + 1)) {
+                falsePositives.add(nodes.get(id));
+            }
+            results.add(new VariantValidation(variant.getName(), falsePositives, falseNegatives));
+        }
+        return results;
+    }
+
+    /**
+     * Creates an empty AST for the main tree based on the target language.
+     *
+     * @return the AST into which the variants are merged
+     * @throws IllegalStateException if an unexpected target language is provided
+     */
+    private AbstractAST createMainAST() {
+        final AbstractAST mainAST;
+        // Determine mainAST based on targetLanguage
+        switch (targetLanguage) {
+            case C:
+                mainAST = new CAST();
+                break;
+            case JAVA:
+                mainAST = new JavaAST();
+                break;
+            case LINES:
+                mainAST = new LineAST();
+                break;
+            default:
+                throw new IllegalStateException("Unexpected value: " + targetLanguage);
+        }
+        return mainAST;
+    }
+
+    /**
+     * Deletes the checkpoint file, if there is one.
+     *
+     * @throws UncheckedIOException if the checkpoint file cannot be deleted
+     */
+    public void discardCheckpoint() {
+        try {
+            Files.deleteIfExists(getCheckpointFile());
+        } catch (final IOException e) {
+            Logger.error("Was not able to delete checkpoint " + getCheckpointFile(), e);
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
      * Returns an array of strings containing the paths for the input folder, input
      * file, results folder, and results file.
@@ -433,9 +730,51 @@ public class TraceBoosting {
      *         associations
      */
     public CustomHashSet<Association> extractAssociationsComparisonBased(final MainTree mainTree) {
+        return extractAssociationsComparisonBased(mainTree, null);
+    }
+
+    /**
+     * Extracts associations like {@link #extractAssociationsComparisonBased(MainTree)}, but skips the variants that
+     * have already been merged into the main tree of the given checkpoint. If a checkpoint interval is set, the
+     * state of the extraction is saved to the checkpoint file each time the given number of variants has been
+     * merged.
+     *
+     * @param mainTree   The main tree to extract associations from
+     * @param checkpoint The checkpoint to continue from, or null to start from scratch
+     * @return An EccoSet of Association objects representing the extracted
+     *         associations
+     * @throws IllegalStateException if the checkpoint does not match the variants of this instance
+     */
+    private CustomHashSet<Association> extractAssociationsComparisonBased(final MainTree mainTree,
+                                                                         final Checkpoint checkpoint) {
+        final List<Variant> variants = this.getVariants();
+        final List<String> processedVariants = new ArrayList<>();
+        final List<CustomHashSet<ASTNode>> processedVariantNodes = new ArrayList<>();
         int productCount = 0;
         CustomHashSet<Association> associations = new CustomHashSet<>();
-        for (Variant variant : this.getVariants()) {
+        if (checkpoint != null) {
+            if (checkpoint.numberOfProcessedVariants() > variants.size()) {
+                throw new IllegalStateException("The checkpoint covers " + checkpoint.numberOfProcessedVariants()
+                        + " variants, but there are only " + variants.size());
+            }
+            for (; productCount < checkpoint.numberOfProcessedVariants(); productCount++) {
+                final Variant variant = variants.get(productCount);
+                final String expectedName = checkpoint.getProcessedVariants().get(productCount);
+                if (!variant.getName().equals(expectedName)) {
+                    throw new IllegalStateException("Variant #" + productCount + " is " + variant.getName()
+                            + ", but the checkpoint expects " + expectedName);
+                }
+                // restore the correspondence to the main tree and forget the AST as if the variant had been merged
+                variant.setAstNodesMainTree(checkpoint.getMainTreeNodes(productCount));
+                variant.restoreMainTreeNodes(mainTree);
+                variant.forgetAST();
+                processedVariants.add(variant.getName());
+                processedVariantNodes.add(variant.getAstNodesMainTree());
+            }
+            associations = checkpoint.getAssociations();
+            Logger.info("Resuming from checkpoint after " + productCount + " variants.");
+        }
+        for (Variant variant : variants.subList(productCount, variants.size())) {
             // merge each product AST into the main tree and collect corresponding main tree
             // nodes
             // in the product for backtracking later on
@@ -504,6 +843,13 @@ public class TraceBoosting {
             associations.removeIf(association -> association.getAstNodes().size() == 0);
             productCount++;
             Logger.info("...done.");
+
+            processedVariants.add(variant.getName());
+            processedVariantNodes.add(variant.getAstNodesMainTree());
+            if (checkpointInterval > 0 && productCount % checkpointInterval == 0 && productCount < variants.size()) {
+                Checkpoint.saveCheckpoint(new Checkpoint(mainTree, associations, allFeatures, processedVariants,
+                        processedVariantNodes), getCheckpointFile());
+            }
         }
 
         return associations;
@@ -654,7 +1000,7 @@ public class TraceBoosting {
 
         final List<VariantInitTask> tasks = new ArrayList<>(variants.length);
         for (int i = 0; i < sourceLocations.size(); i++) {
-            tasks.add(new VariantInitTask(i, sourceLocations.get(i), targetLanguage));
+            tasks.add(new VariantInitTask(i, sourceLocations.get(i), targetLanguage, parseOptions));
         }
         return tasks;
     }
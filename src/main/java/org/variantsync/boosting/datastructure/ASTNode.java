@@ -1,12 +1,9 @@
 package org.variantsync.boosting.datastructure;
 
-import org.variantsync.boosting.TraceBoosting;
 import org.variantsync.boosting.position.Position;
 
 import org.logicng.formulas.FType;
 import org.logicng.formulas.Formula;
-import org.logicng.io.parsers.ParserException;
-import org.logicng.io.parsers.PropositionalParser;
 
 import java.io.*;
 import java.util.Objects;
@@ -31,32 +28,39 @@ public class ASTNode implements Serializable {
         SWITCH_ENTRY, SWITCH_STMT, MODULE_DECLARATION
     }
 
-    private final String code;
+    // the canonical instance from the CodePool, so that equal codes are the same object
+    private String code;
     private ASTNode parent;
-    private final CustomHashSet<ASTNode> children;
+    private final ChildSet children;
     private final NODE_TYPE type;
     private transient Position startPosition;
     private transient Formula mapping;
     private ASTNode productEquivalent;
     private int sequenceNumber = 0;
+    // the index of this node in the nodes of its AST
+    private int id = -1;
+    // summarizes what isSimilar compares, or 0 if it has not been computed since the last change
+    private transient long fingerprint;
 
     /**
      * Constructs a new ASTNode with the specified parameters.
-     * 
+     * <p>
+     * The code is interned through the {@link CodePool}, as is the code of deserialized nodes. Every node gets its
+     * code this way, so that {@link #isSimilar(ASTNode)} usually recognizes equal codes by identity.
      */
     public ASTNode(final ASTNode parent, final String code, final Position position, final NODE_TYPE type,
             final Formula mapping) {
         this.parent = parent;
-        this.code = code;
+        this.code = CodePool.intern(code);
         this.startPosition = Objects.requireNonNull(position);
         this.type = type;
         this.mapping = mapping;
-        children = new CustomHashSet<>();
+        children = new ChildSet();
         productEquivalent = null;
     }
 
     // if two nodes are at the same position of the AST and contain the same code,
-    // we distinguish them by sequence numbers
+    // we distinguish them by sequence numbers, which count the siblings with the same code and type
     /*
      * Warning: Later on we will match nodes from different products by their
      * sequence numbers, but that is not necessarily correct (they can e.g. be
@@ -65,9 +69,9 @@ public class ASTNode implements Serializable {
      * of the nodes' children and was omitted here.
      */
     public void addChild(final ASTNode child) {
-        while (!children.add(child)) {
-            child.sequenceNumber += 1;
-        }
+        child.sequenceNumber = children.nextSequenceNumber(child);
+        child.invalidateFingerprint();
+        children.add(child);
     }
 
     /**
@@ -96,12 +100,91 @@ public class ASTNode implements Serializable {
             return true;
         if (eccoNode == null || getClass() != eccoNode.getClass())
             return false;
+        // similar nodes have equal fingerprints, so most dissimilar nodes are told apart without further ado
+        if (getFingerprint() != eccoNode.getFingerprint())
+            return false;
+        // the codes are interned, so equals only compares the characters if a code has bypassed the pool
         return Objects.equals(code, eccoNode.code) &&
                 this.similarParent(eccoNode) &&
                 type == eccoNode.type &&
                 sequenceNumber == eccoNode.sequenceNumber;
     }
 
+    /**
+     * Returns the number that distinguishes this node from siblings with the same code.
+     */
+    public int getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    /**
+     * Sets the number that distinguishes this node from siblings with the same code. Only required when a node
+     * is restored without {@link #addChild(ASTNode)}, e.g., when it is loaded from a file.
+     */
+    public void setSequenceNumber(final int sequenceNumber) {
+        this.sequenceNumber = sequenceNumber;
+        invalidateFingerprint();
+    }
+
+    /**
+     * Returns the dense id of this node among the nodes of its AST (see {@link NodeArray}).
+     *
+     * @return the id, or -1 if the node does not belong to the nodes of an AST, e.g., the root
+     */
+    public int getId() {
+        return id;
+    }
+
+    void setId(final int id) {
+        this.id = id;
+    }
+
+    /**
+     * Returns a 64-bit fingerprint of the code, type, and sequence number of this node and of its parent. Nodes
+     * that are similar (see {@link #isSimilar(ASTNode)}) have the same fingerprint.
+     */
+    public long getFingerprint() {
+        long fingerprint = this.fingerprint;
+        if (fingerprint == 0) {
+            fingerprint = mix(mix(mix(0, code), ordinal(type)), sequenceNumber);
+            if (parent != null) {
+                fingerprint = mix(mix(mix(fingerprint, parent.code), ordinal(parent.type)),
+                        parent.sequenceNumber);
+            }
+            // murmur3's finalizer, so that all bits depend on all parts; 0 marks a fingerprint as not computed
+            fingerprint ^= fingerprint >>> 33;
+            fingerprint *= 0xff51afd7ed558ccdL;
+            fingerprint ^= fingerprint >>> 33;
+            fingerprint *= 0xc4ceb9fe1a85ec53L;
+            fingerprint ^= fingerprint >>> 33;
+            if (fingerprint == 0) {
+                fingerprint = 1;
+            }
+            this.fingerprint = fingerprint;
+        }
+        return fingerprint;
+    }
+
+    private static long mix(final long fingerprint, final String part) {
+        return mix(fingerprint, part == null ? 0 : part.hashCode());
+    }
+
+    private static int ordinal(final NODE_TYPE type) {
+        return type == null ? -1 : type.ordinal();
+    }
+
+    private static long mix(final long fingerprint, final int part) {
+        return (fingerprint + part) * 0x9e3779b97f4a7c15L;
+    }
+
+    // the fingerprints of the children include the sequence number of this node
+    private void invalidateFingerprint() {
+        fingerprint = 0;
+        for (final ASTNode child : children) {
+            child.fingerprint = 0;
+        }
+    }
+
     /**
      * @return the code associated with this ASTNode
      */
@@ -124,7 +207,7 @@ public class ASTNode implements Serializable {
     private boolean similarParent(final ASTNode other) {
         if (this.parent == other.parent)
             return true;
-        if (this.parent == null || this.parent.getClass() != other.parent.getClass())
+        if (this.parent == null || other.parent == null || this.parent.getClass() != other.parent.getClass())
             return false;
         return Objects.equals(this.parent.code, other.parent.code) &&
                 this.parent.type == other.parent.type &&
@@ -143,12 +226,13 @@ public class ASTNode implements Serializable {
      */
     public void setParent(final ASTNode parent) {
         this.parent = parent;
+        fingerprint = 0;
     }
 
     /**
-     * Returns a set of this node's child nodes.
+     * Returns a set of this node's child nodes, in the order in which they have been added.
      */
-    public CustomHashSet<ASTNode> getChildren() {
+    public ChildSet getChildren() {
         return children;
     }
 
@@ -200,7 +284,7 @@ public class ASTNode implements Serializable {
         final Object o1;
         final Object o2;
         if (mapping != null) {
-            o1 = mapping.toString();
+            o1 = FormulaDictionary.serializable(mapping);
         } else {
             o1 = null;
         }
@@ -212,11 +296,12 @@ public class ASTNode implements Serializable {
         oos.writeObject(new Object[] { o1, o2 });
     }
 
-    private void readObject(final ObjectInputStream ois) throws ClassNotFoundException, IOException, ParserException {
+    private void readObject(final ObjectInputStream ois) throws ClassNotFoundException, IOException {
         ois.defaultReadObject();
+        this.code = CodePool.intern(code);
         final Object[] transientObjects = (Object[]) ois.readObject();
         if (transientObjects[0] != null) {
-            this.mapping = new PropositionalParser(TraceBoosting.f).parse((String) transientObjects[0]);
+            this.mapping = ((FormulaDictionary.SerializedFormula) transientObjects[0]).getFormula();
         }
         if (transientObjects[1] != null) {
             final String[] serializedPosition = (String[]) transientObjects[1];
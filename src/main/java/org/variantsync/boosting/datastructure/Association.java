@@ -2,6 +2,10 @@ package org.variantsync.boosting.datastructure;
 
 import org.logicng.formulas.Formula;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.*;
 
 /**
@@ -28,13 +32,13 @@ import java.util.*;
  * The equals and hashCode methods are overridden to ensure proper comparison of
  * association objects based on their components.
  */
-public class Association {
+public class Association implements Serializable {
     private CustomHashSet<ASTNode> astNodes;
     private CustomHashSet<Module> min;
     private CustomHashSet<Module> all;
     private CustomHashSet<Module> max;
     private CustomHashSet<Module> not;
-    private Formula mapping;
+    private transient Formula mapping;
     // isBasic tells whether the code of the association appears in all products
     private boolean isBasic;
 
@@ -250,4 +254,16 @@ public class Association {
         return isBasic;
     }
 
+    private void writeObject(final ObjectOutputStream oos) throws IOException {
+        oos.defaultWriteObject();
+        oos.writeObject(mapping == null ? null : FormulaDictionary.serializable(mapping));
+    }
+
+    private void readObject(final ObjectInputStream ois) throws ClassNotFoundException, IOException {
+        ois.defaultReadObject();
+        final Object serializedMapping = ois.readObject();
+        if (serializedMapping != null) {
+            this.mapping = ((FormulaDictionary.SerializedFormula) serializedMapping).getFormula();
+        }
+    }
 }
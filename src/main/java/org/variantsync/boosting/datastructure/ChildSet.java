@@ -0,0 +1,252 @@
+package org.variantsync.boosting.datastructure;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * The children of an {@link ASTNode}, in the order in which they have been added, which is their order in the
+ * source code.
+ * <p>
+ * The children are kept in an array, as most nodes have only a few of them. Membership and the sequence numbers
+ * of children with the same code and type are determined by scanning the array, until the number of children
+ * exceeds {@value #INDEX_THRESHOLD}; then hash indexes are built that are kept up to date from there on.
+ */
+public class ChildSet extends AbstractSet<ASTNode> implements Serializable {
+    /**
+     * The number of children up to which no hash index is built.
+     */
+    public static final int INDEX_THRESHOLD = 8;
+
+    private static final ASTNode[] EMPTY = new ASTNode[0];
+
+    private ASTNode[] nodes = EMPTY;
+    private int size;
+    private transient HashSet<ASTNode> index;
+    // the next sequence number for each code and type
+    private transient Map<Occurrence, Integer> sequenceNumbers;
+    // counts structural changes, so that iterators can detect concurrent modifications
+    private transient int modifications;
+
+    /**
+     * Constructs an empty ChildSet.
+     */
+    public ChildSet() {
+    }
+
+    /**
+     * Returns the child at the given position.
+     *
+     * @param position the position of the child, starting at 0
+     * @return the child
+     * @throws IndexOutOfBoundsException if there is no child at the position
+     */
+    public ASTNode get(final int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Position " + position + " of " + size + " children");
+        }
+        return nodes[position];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+        if (size > INDEX_THRESHOLD) {
+            return index().contains(o);
+        }
+        return indexOf(o) >= 0;
+    }
+
+    /**
+     * Appends a child, unless it is already contained.
+     *
+     * @param node the child
+     * @return true if the child has been added, false if it is already contained
+     */
+    @Override
+    public boolean add(final ASTNode node) {
+        if (contains(node)) {
+            return false;
+        }
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, Math.max(2, size + (size >> 1)));
+        }
+        nodes[size++] = node;
+        if (index != null) {
+            index.add(node);
+        }
+        if (sequenceNumbers != null) {
+            sequenceNumbers.merge(new Occurrence(node), node.getSequenceNumber() + 1, Math::max);
+        }
+        modifications++;
+        return true;
+    }
+
+    /**
+     * Returns the sequence number for a new child, which is one more than the highest sequence number of the
+     * children with the same code and type, or 0 if there are none. Sequence numbers of removed children may be
+     * skipped.
+     *
+     * @param node the new child
+     * @return the sequence number
+     */
+    public int nextSequenceNumber(final ASTNode node) {
+        if (size > INDEX_THRESHOLD) {
+            return sequenceNumbers().getOrDefault(new Occurrence(node), 0);
+        }
+        int next = 0;
+        for (int i = 0; i < size; i++) {
+            if (Occurrence.same(nodes[i], node)) {
+                next = Math.max(next, nodes[i].getSequenceNumber() + 1);
+            }
+        }
+        return next;
+    }
+
+    @Override
+    public boolean remove(final Object o) {
+        if (size > INDEX_THRESHOLD && !index().contains(o)) {
+            return false;
+        }
+        final int position = indexOf(o);
+        if (position < 0) {
+            return false;
+        }
+        removeAt(position);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(nodes, 0, size, null);
+        size = 0;
+        index = null;
+        sequenceNumbers = null;
+        modifications++;
+    }
+
+    @Override
+    public Iterator<ASTNode> iterator() {
+        return new Iterator<>() {
+            private int next;
+            private int last = -1;
+            private int expectedModifications = modifications;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public ASTNode next() {
+                if (modifications != expectedModifications) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                last = next++;
+                return nodes[last];
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+                if (modifications != expectedModifications) {
+                    throw new ConcurrentModificationException();
+                }
+                removeAt(last);
+                next = last;
+                last = -1;
+                expectedModifications = modifications;
+            }
+        };
+    }
+
+    private int indexOf(final Object o) {
+        for (int i = 0; i < size; i++) {
+            if (nodes[i].equals(o)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void removeAt(final int position) {
+        final ASTNode node = nodes[position];
+        System.arraycopy(nodes, position + 1, nodes, position, size - position - 1);
+        nodes[--size] = null;
+        if (index != null) {
+            index.remove(node);
+        }
+        if (size <= INDEX_THRESHOLD) {
+            index = null;
+            sequenceNumbers = null;
+        }
+        modifications++;
+    }
+
+    // built on first use, also after deserialization, as it is transient
+    private HashSet<ASTNode> index() {
+        if (index == null) {
+            index = new HashSet<>(Arrays.asList(nodes).subList(0, size));
+        }
+        return index;
+    }
+
+    // built on first use, like the index
+    private Map<Occurrence, Integer> sequenceNumbers() {
+        if (sequenceNumbers == null) {
+            sequenceNumbers = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                sequenceNumbers.merge(new Occurrence(nodes[i]), nodes[i].getSequenceNumber() + 1, Math::max);
+            }
+        }
+        return sequenceNumbers;
+    }
+
+    /**
+     * The code and type of a child, which together with its sequence number distinguish it from its siblings.
+     */
+    private static final class Occurrence {
+        private final String code;
+        private final ASTNode.NODE_TYPE type;
+
+        private Occurrence(final ASTNode node) {
+            this.code = node.getCode();
+            this.type = node.getType();
+        }
+
+        private static boolean same(final ASTNode a, final ASTNode b) {
+            return Objects.equals(a.getCode(), b.getCode()) && a.getType() == b.getType();
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Occurrence))
+                return false;
+            final Occurrence that = (Occurrence) o;
+            return Objects.equals(code, that.code) && type == that.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(code, type);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.variantsync.boosting.datastructure;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Deduplicates the code of AST nodes.
+ * <p>
+ * Most lines and statements occur in many variants and again in the main tree. The pool keeps one canonical
+ * string per distinct code, which all nodes with that code share, so that two codes are equal exactly if they are
+ * the same object. The pool only holds its strings weakly: a code is removed once no node refers to it anymore, so
+ * the pool does not outlive the ASTs of a run. As long as a node refers to a code, every equal code is interned to
+ * the same object.
+ * <p>
+ * The pool is shared by all threads. It is split into stripes by the hash of the code, so that threads that parse
+ * files in parallel rarely wait for each other.
+ */
+public final class CodePool {
+    private static final int STRIPES = 64;
+    private static final List<Map<String, WeakReference<String>>> codes = new ArrayList<>(STRIPES);
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            codes.add(new WeakHashMap<>());
+        }
+    }
+
+    private CodePool() {
+    }
+
+    /**
+     * Returns the canonical instance of a code.
+     *
+     * @param code the code, or null
+     * @return the string in the pool that is equal to the code, or null if the code is null
+     */
+    public static String intern(final String code) {
+        if (code == null) {
+            return null;
+        }
+        final int hash = code.hashCode();
+        final Map<String, WeakReference<String>> stripe = codes.get((hash ^ (hash >>> 16)) & (STRIPES - 1));
+        synchronized (stripe) {
+            final WeakReference<String> reference = stripe.get(code);
+            final String canonical = reference == null ? null : reference.get();
+            if (canonical != null) {
+                return canonical;
+            }
+            // the value refers to the key weakly, so that it does not keep the key reachable
+            stripe.put(code, new WeakReference<>(code));
+            return code;
+        }
+    }
+
+    /**
+     * Returns the number of distinct codes in the pool, including codes that are no longer referenced but have not
+     * been removed yet.
+     */
+    public static int size() {
+        int size = 0;
+        for (final Map<String, WeakReference<String>> stripe : codes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+}
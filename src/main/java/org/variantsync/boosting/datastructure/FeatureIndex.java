@@ -0,0 +1,150 @@
+package org.variantsync.boosting.datastructure;
+
+import org.logicng.formulas.Formula;
+import org.logicng.formulas.Literal;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * An index from the variables of the mappings of a main tree to the nodes whose mappings mention them.
+ * <p>
+ * For each variable, the index holds the ids (see {@link ASTNode#getId()}) of the nodes whose mapping contains the
+ * variable as a positive literal and as a negative literal, as bit sets. Feature expressions are answered with set
+ * operations on these bit sets: after converting an expression to negation normal form, a literal selects the nodes
+ * that mention it in its phase, a conjunction intersects, and a disjunction unites the selected nodes. The
+ * constant true selects all nodes.
+ * <p>
+ * The index is a snapshot of the mappings at the time it is built; build a new index after the mappings change.
+ */
+public class FeatureIndex {
+    private final NodeArray nodes;
+    private final Map<String, BitSet> positive = new HashMap<>();
+    private final Map<String, BitSet> negative = new HashMap<>();
+
+    /**
+     * Builds the index of the current mappings of a main tree.
+     *
+     * @param mainTree the main tree, usually as returned by the computation of the mappings
+     */
+    public FeatureIndex(final MainTree mainTree) {
+        this.nodes = mainTree.getTree().getAstNodes();
+        for (final ASTNode node : nodes) {
+            final Formula mapping = node.getMapping();
+            if (mapping == null) {
+                continue;
+            }
+            // in negation normal form, so that the phase of a literal is its phase in the mapping
+            for (final Literal literal : mapping.nnf().literals()) {
+                (literal.phase() ? positive : negative).computeIfAbsent(literal.name(), name -> new BitSet())
+                        .set(node.getId());
+            }
+        }
+    }
+
+    /**
+     * Returns the variables that occur in the mappings.
+     *
+     * @return the variables, sorted by name
+     */
+    public Set<String> getVariables() {
+        final Set<String> variables = new TreeSet<>(positive.keySet());
+        variables.addAll(negative.keySet());
+        return Collections.unmodifiableSet(variables);
+    }
+
+    /**
+     * Returns the nodes whose mapping contains the given variable as a positive literal.
+     *
+     * @param variable the name of the variable, e.g., a feature
+     * @return the nodes, in the order of their ids
+     */
+    public List<ASTNode> getNodes(final String variable) {
+        return getNodes(variable, true);
+    }
+
+    /**
+     * Returns the nodes whose mapping contains the given variable as a literal of the given phase.
+     *
+     * @param variable the name of the variable, e.g., a feature
+     * @param phase    true for positive literals, false for negated ones
+     * @return the nodes, in the order of their ids
+     */
+    public List<ASTNode> getNodes(final String variable, final boolean phase) {
+        return toNodes((phase ? positive : negative).getOrDefault(variable, new BitSet()));
+    }
+
+    /**
+     * Returns the nodes that a feature expression selects, e.g., the expression {@code E & ~C} selects the nodes
+     * whose mappings mention E positively and C negatively.
+     *
+     * @param expression the feature expression
+     * @return the selected nodes, in the order of their ids
+     * @throws IllegalArgumentException if the expression contains pseudo-Boolean constraints
+     */
+    public List<ASTNode> query(final Formula expression) {
+        return toNodes(queryIds(expression));
+    }
+
+    /**
+     * Returns the ids of the nodes that a feature expression selects (see {@link #query(Formula)}).
+     *
+     * @param expression the feature expression
+     * @return the ids of the selected nodes, which may be modified by the caller
+     * @throws IllegalArgumentException if the expression contains pseudo-Boolean constraints
+     */
+    public BitSet queryIds(final Formula expression) {
+        return select(expression.nnf());
+    }
+
+    private BitSet select(final Formula formula) {
+        switch (formula.type()) {
+            case TRUE: {
+                final BitSet all = new BitSet(nodes.size());
+                all.set(0, nodes.size());
+                return all;
+            }
+            case FALSE:
+                return new BitSet();
+            case LITERAL: {
+                final Literal literal = (Literal) formula;
+                final BitSet ids = (literal.phase() ? positive : negative).get(literal.name());
+                return ids == null ? new BitSet() : (BitSet) ids.clone();
+            }
+            case AND: {
+                BitSet intersection = null;
+                for (final Formula operand : formula) {
+                    if (intersection == null) {
+                        intersection = select(operand);
+                    } else if (!intersection.isEmpty()) {
+                        intersection.and(select(operand));
+                    }
+                }
+                return intersection;
+            }
+            case OR: {
+                final BitSet union = new BitSet();
+                for (final Formula operand : formula) {
+                    union.or(select(operand));
+                }
+                return union;
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported feature expression: " + formula);
+        }
+    }
+
+    private List<ASTNode> toNodes(final BitSet ids) {
+        final List<ASTNode> result = new ArrayList<>(ids.cardinality());
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            result.add(nodes.get(id));
+        }
+        return result;
+    }
+}
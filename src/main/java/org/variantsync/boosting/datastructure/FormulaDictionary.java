@@ -0,0 +1,314 @@
+package org.variantsync.boosting.datastructure;
+
+import org.variantsync.boosting.TraceBoosting;
+
+import org.logicng.formulas.BinaryOperator;
+import org.logicng.formulas.FType;
+import org.logicng.formulas.Formula;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Not;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A dictionary of feature mappings that stores each distinct formula only once.
+ * <p>
+ * Formulas are encoded as a directed acyclic graph in which each distinct (sub-)formula is a node that refers to
+ * the nodes of its operands by ID. Operands always have smaller IDs than the formulas containing them, so that
+ * the encoded nodes can be decoded in a single pass with the constructors of a {@link FormulaFactory}, without
+ * printing and re-parsing the formulas. Each node is encoded as a kind followed by its payload:
+ * <ul>
+ * <li>{@code TRUE}, {@code FALSE}: no payload</li>
+ * <li>{@code LITERAL}: the index of the variable name and the phase (1 for positive, 0 for negative)</li>
+ * <li>{@code NOT}: the ID of the operand</li>
+ * <li>{@code AND}, {@code OR}: the number of operands followed by their IDs</li>
+ * <li>{@code IMPL}, {@code EQUIV}: the IDs of the left and right operand</li>
+ * </ul>
+ * All formulas added to a dictionary are also available as formulas of the dictionary's factory, so the
+ * dictionary can be used to copy formulas of a different factory.
+ */
+public class FormulaDictionary {
+    static final int TRUE = 0;
+    static final int FALSE = 1;
+    static final int LITERAL = 2;
+    static final int NOT = 3;
+    static final int AND = 4;
+    static final int OR = 5;
+    static final int IMPL = 6;
+    static final int EQUIV = 7;
+
+    // Canonical serialized forms of formulas, shared by all nodes with the same mapping (see serializable(Formula))
+    private static final Map<Formula, SerializedFormula> serializedFormulas =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final FormulaFactory f;
+    private final List<String> variables = new ArrayList<>();
+    private final Map<String, Integer> variableIds = new HashMap<>();
+    private final List<Formula> formulas = new ArrayList<>();
+    private final Map<Formula, Integer> formulaIds = new HashMap<>();
+    private int[] encodedNodes = new int[64];
+    private int encodedLength = 0;
+
+    /**
+     * Constructs an empty FormulaDictionary whose formulas belong to the given factory.
+     *
+     * @param f the factory of the formulas in this dictionary
+     */
+    public FormulaDictionary(final FormulaFactory f) {
+        this.f = f;
+    }
+
+    /**
+     * Decodes a dictionary from the variable names and encoded nodes of another dictionary.
+     *
+     * @param f            the factory in which the formulas are created
+     * @param variables    the variable names, as returned by {@link #getVariables()}
+     * @param encodedNodes the encoded nodes, as returned by {@link #getEncodedNodes()}
+     * @return a dictionary in which each node has the same ID as in the encoded dictionary
+     * @throws IllegalArgumentException if the encoded nodes are malformed
+     */
+    public static FormulaDictionary decode(final FormulaFactory f, final List<String> variables,
+                                           final int[] encodedNodes) {
+        final FormulaDictionary dictionary = new FormulaDictionary(f);
+        int i = 0;
+        while (i < encodedNodes.length) {
+            final int kind = encodedNodes[i++];
+            final Formula formula;
+            switch (kind) {
+                case TRUE:
+                    formula = f.verum();
+                    break;
+                case FALSE:
+                    formula = f.falsum();
+                    break;
+                case LITERAL:
+                    formula = f.literal(variables.get(encodedNodes[i]), encodedNodes[i + 1] == 1);
+                    i += 2;
+                    break;
+                case NOT:
+                    formula = f.not(dictionary.get(encodedNodes[i++]));
+                    break;
+                case AND:
+                case OR: {
+                    final int arity = encodedNodes[i++];
+                    if (arity < 0 || arity > encodedNodes.length - i) {
+                        throw new IllegalArgumentException("Invalid arity " + arity);
+                    }
+                    final List<Formula> operands = new ArrayList<>(arity);
+                    for (int j = 0; j < arity; j++) {
+                        operands.add(dictionary.get(encodedNodes[i++]));
+                    }
+                    formula = kind == AND ? f.and(operands) : f.or(operands);
+                    break;
+                }
+                case IMPL:
+                    formula = f.implication(dictionary.get(encodedNodes[i]), dictionary.get(encodedNodes[i + 1]));
+                    i += 2;
+                    break;
+                case EQUIV:
+                    formula = f.equivalence(dictionary.get(encodedNodes[i]), dictionary.get(encodedNodes[i + 1]));
+                    i += 2;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown formula kind " + kind);
+            }
+            // register the decoded formula under the next ID, even if the factory simplified it to an existing one
+            dictionary.formulas.add(formula);
+            dictionary.formulaIds.putIfAbsent(formula, dictionary.formulas.size() - 1);
+        }
+        dictionary.variables.addAll(variables);
+        for (int v = 0; v < variables.size(); v++) {
+            dictionary.variableIds.put(variables.get(v), v);
+        }
+        dictionary.encodedNodes = encodedNodes.clone();
+        dictionary.encodedLength = encodedNodes.length;
+        return dictionary;
+    }
+
+    /**
+     * Adds the given formula and all its sub-formulas to this dictionary, if they are not contained yet.
+     *
+     * @param formula the formula to add
+     * @return the ID of the formula
+     * @throws UnsupportedOperationException if the formula contains pseudo-Boolean constraints
+     */
+    public int add(final Formula formula) {
+        final Integer id = formulaIds.get(formula);
+        if (id != null) {
+            return id;
+        }
+        final Formula copy;
+        switch (formula.type()) {
+            case TRUE:
+                append(TRUE);
+                copy = f.verum();
+                break;
+            case FALSE:
+                append(FALSE);
+                copy = f.falsum();
+                break;
+            case LITERAL: {
+                final Literal literal = (Literal) formula;
+                final int variable = variableIds.computeIfAbsent(literal.name(), name -> {
+                    variables.add(name);
+                    return variables.size() - 1;
+                });
+                append(LITERAL, variable, literal.phase() ? 1 : 0);
+                copy = f.literal(literal.name(), literal.phase());
+                break;
+            }
+            case NOT: {
+                final int operand = add(((Not) formula).operand());
+                append(NOT, operand);
+                copy = f.not(formulas.get(operand));
+                break;
+            }
+            case AND:
+            case OR: {
+                final int[] operands = new int[formula.numberOfOperands()];
+                final List<Formula> operandCopies = new ArrayList<>(operands.length);
+                int j = 0;
+                for (final Formula operand : formula) {
+                    operands[j] = add(operand);
+                    operandCopies.add(formulas.get(operands[j]));
+                    j++;
+                }
+                final boolean isAnd = formula.type() == FType.AND;
+                append(isAnd ? AND : OR, operands.length);
+                append(operands);
+                copy = isAnd ? f.and(operandCopies) : f.or(operandCopies);
+                break;
+            }
+            case IMPL:
+            case EQUIV: {
+                final BinaryOperator operator = (BinaryOperator) formula;
+                final int left = add(operator.left());
+                final int right = add(operator.right());
+                final boolean isImplication = formula.type() == FType.IMPL;
+                append(isImplication ? IMPL : EQUIV, left, right);
+                copy = isImplication ? f.implication(formulas.get(left), formulas.get(right))
+                        : f.equivalence(formulas.get(left), formulas.get(right));
+                break;
+            }
+            default:
+                throw new UnsupportedOperationException("Unsupported formula type " + formula.type());
+        }
+        // formulas of the dictionary's factory are kept as they are
+        formulas.add(formula.factory() == f ? formula : copy);
+        formulaIds.put(formula, formulas.size() - 1);
+        return formulas.size() - 1;
+    }
+
+    /**
+     * Returns a formula of this dictionary's factory that is equal to the given formula, e.g., to copy a formula
+     * of another factory. Formulas that already belong to this dictionary's factory are returned as they are.
+     *
+     * @param formula the formula to copy, or null
+     * @return the formula of this dictionary's factory, or null if the given formula is null
+     */
+    public Formula copy(final Formula formula) {
+        if (formula == null) {
+            return null;
+        }
+        return get(add(formula));
+    }
+
+    /**
+     * Returns the formula with the given ID.
+     *
+     * @param id the ID of the formula
+     * @return the formula of this dictionary's factory
+     */
+    public Formula get(final int id) {
+        return formulas.get(id);
+    }
+
+    /**
+     * Returns the number of distinct (sub-)formulas in this dictionary.
+     */
+    public int size() {
+        return formulas.size();
+    }
+
+    /**
+     * Returns the names of the variables occurring in the formulas of this dictionary, indexed by the variable
+     * indices used in the encoded nodes.
+     */
+    public List<String> getVariables() {
+        return Collections.unmodifiableList(variables);
+    }
+
+    /**
+     * Returns the encoded nodes of this dictionary, in the order of their IDs.
+     */
+    public int[] getEncodedNodes() {
+        return Arrays.copyOf(encodedNodes, encodedLength);
+    }
+
+    private void append(final int... values) {
+        if (encodedLength + values.length > encodedNodes.length) {
+            encodedNodes = Arrays.copyOf(encodedNodes, Math.max(encodedNodes.length * 2, encodedLength + values.length));
+        }
+        System.arraycopy(values, 0, encodedNodes, encodedLength, values.length);
+        encodedLength += values.length;
+    }
+
+    /**
+     * Returns the serializable form of the given formula. All calls with equal formulas return the same object, so
+     * that an object stream writes each distinct formula only once and decodes it only once when it is read again.
+     *
+     * @param formula the formula to serialize
+     * @return the serializable form of the formula
+     */
+    public static SerializedFormula serializable(final Formula formula) {
+        return serializedFormulas.computeIfAbsent(formula, SerializedFormula::new);
+    }
+
+    /**
+     * The serializable form of a single formula, holding the encoded nodes of a dictionary that contains only this
+     * formula. Deserialized formulas belong to {@link TraceBoosting#f}.
+     */
+    public static class SerializedFormula implements Serializable {
+        private final String[] variables;
+        private final int[] encodedNodes;
+        private transient Formula formula;
+
+        private SerializedFormula(final Formula formula) {
+            final FormulaDictionary dictionary = new FormulaDictionary(formula.factory());
+            dictionary.add(formula);
+            this.variables = dictionary.getVariables().toArray(new String[0]);
+            this.encodedNodes = dictionary.getEncodedNodes();
+            // the formula is not kept, as it is the key under which this object is cached
+        }
+
+        /**
+         * Returns the deserialized formula.
+         *
+         * @return the formula, or null if this object has not been deserialized
+         */
+        public Formula getFormula() {
+            return formula;
+        }
+
+        private void readObject(final ObjectInputStream ois) throws ClassNotFoundException, IOException {
+            ois.defaultReadObject();
+            try {
+                final FormulaDictionary dictionary = decode(TraceBoosting.f, Arrays.asList(variables), encodedNodes);
+                // the formula itself is added last, after all its operands
+                this.formula = dictionary.get(dictionary.size() - 1);
+            } catch (final IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new IOException("Was not able to decode mapping", e);
+            }
+        }
+    }
+}
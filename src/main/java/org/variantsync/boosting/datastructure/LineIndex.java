@@ -0,0 +1,188 @@
+package org.variantsync.boosting.datastructure;
+
+import org.variantsync.boosting.persistence.MainTreeCodec;
+import org.variantsync.boosting.position.LinePosition;
+import org.variantsync.boosting.position.ProductPosition;
+import org.variantsync.boosting.product.Variant;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An index from the lines of the files of the variants to the main tree nodes at these lines.
+ * <p>
+ * For each variant and file, the index holds the line positions of the variant that have been merged into the main
+ * tree, sorted by line, like the line index of {@link org.variantsync.boosting.persistence.MainTreeCodec}. The nodes
+ * in a range of lines are found by a binary search for the first line of the range, so a query takes
+ * O(log n + k) time for n positions in the file and k nodes in the range.
+ * <p>
+ * The index is a snapshot of the product positions at the time it is built.
+ */
+public class LineIndex {
+    /**
+     * A range of lines in a file, e.g., the lines of a hunk of a diff.
+     */
+    public static class Hunk {
+        private final String filePath;
+        private final int firstLine;
+        private final int lastLine;
+
+        /**
+         * Constructs a Hunk of the lines from the first to the last line, inclusively.
+         *
+         * @param filePath  the path of the file, as in the positions of the variant, i.e., starting with the sources
+         *                  root of the variant
+         * @param firstLine the first line, as in the positions of the variant
+         * @param lastLine  the last line, as in the positions of the variant
+         */
+        public Hunk(final String filePath, final int firstLine, final int lastLine) {
+            this.filePath = filePath;
+            this.firstLine = firstLine;
+            this.lastLine = lastLine;
+        }
+
+        /**
+         * Returns the path of the file.
+         */
+        public String getFilePath() {
+            return filePath;
+        }
+
+        /**
+         * Returns the first line of the range.
+         */
+        public int getFirstLine() {
+            return firstLine;
+        }
+
+        /**
+         * Returns the last line of the range, which is part of the range.
+         */
+        public int getLastLine() {
+            return lastLine;
+        }
+
+        @Override
+        public String toString() {
+            return filePath + ":" + firstLine + "-" + lastLine;
+        }
+    }
+
+    private static final long[] NO_ENTRIES = new long[0];
+
+    private final NodeArray nodes;
+    // for each variant and file, the sorted entries of the lines and node ids (see MainTreeCodec#lineIndexEntry)
+    private final Map<String, Map<String, long[]>> entries = new HashMap<>();
+
+    /**
+     * Builds the index of the product positions of a main tree.
+     *
+     * @param mainTree the main tree, usually as returned by the computation of the mappings
+     */
+    public LineIndex(final MainTree mainTree) {
+        this.nodes = mainTree.getTree().getAstNodes();
+        final Map<String, Map<String, Entries>> buffers = new HashMap<>();
+        for (final ASTNode node : nodes) {
+            final Set<ProductPosition> productPositions = mainTree.getProductPositions(node);
+            if (productPositions == null) {
+                continue;
+            }
+            for (final ProductPosition productPosition : productPositions) {
+                if (productPosition.position instanceof LinePosition) {
+                    buffers.computeIfAbsent(productPosition.variant.getName(), name -> new HashMap<>())
+                            .computeIfAbsent(productPosition.position.serializedPosition()[1], path -> new Entries())
+                            .add(MainTreeCodec.lineIndexEntry(productPosition.position.lineNumber(), node.getId()));
+                }
+            }
+        }
+        buffers.forEach((variant, files) -> {
+            final Map<String, long[]> variantEntries = new HashMap<>();
+            files.forEach((path, buffer) -> {
+                final long[] fileEntries = Arrays.copyOf(buffer.values, buffer.size);
+                Arrays.sort(fileEntries);
+                variantEntries.put(path, fileEntries);
+            });
+            entries.put(variant, variantEntries);
+        });
+    }
+
+    /**
+     * Returns the main tree nodes with a position in the given range of lines of a file of a variant.
+     *
+     * @param variant   the variant
+     * @param filePath  the path of the file, as in the positions of the variant, i.e., starting with the sources
+     *                  root of the variant
+     * @param firstLine the first line of the range, as in the positions of the variant
+     * @param lastLine  the last line of the range, inclusively
+     * @return the nodes, ordered by line, or an empty list if there are none
+     */
+    public List<ASTNode> getNodes(final Variant variant, final String filePath, final int firstLine,
+                                  final int lastLine) {
+        final List<ASTNode> result = new ArrayList<>();
+        collect(entries(variant.getName(), filePath), firstLine, lastLine, result);
+        return result;
+    }
+
+    /**
+     * Returns the main tree nodes for each of the given ranges of lines of a variant, e.g., to annotate the hunks of a
+     * diff with the features that they touch.
+     *
+     * @param variant the variant
+     * @param hunks   the ranges of lines
+     * @return the nodes in each range, ordered by line, in the order of the ranges
+     */
+    public List<List<ASTNode>> annotate(final Variant variant, final List<Hunk> hunks) {
+        final Map<String, long[]> variantEntries = entries.getOrDefault(variant.getName(), Collections.emptyMap());
+        final List<List<ASTNode>> result = new ArrayList<>(hunks.size());
+        for (final Hunk hunk : hunks) {
+            final List<ASTNode> hunkNodes = new ArrayList<>();
+            collect(variantEntries.getOrDefault(hunk.filePath, NO_ENTRIES), hunk.firstLine, hunk.lastLine, hunkNodes);
+            result.add(hunkNodes);
+        }
+        return result;
+    }
+
+    private long[] entries(final String variant, final String filePath) {
+        return entries.getOrDefault(variant, Collections.emptyMap()).getOrDefault(filePath, NO_ENTRIES);
+    }
+
+    private void collect(final long[] fileEntries, final int firstLine, final int lastLine,
+                         final List<ASTNode> result) {
+        if (firstLine > lastLine) {
+            return;
+        }
+        // the lower bound of the first line, as node ids are not negative
+        final long lowest = MainTreeCodec.lineIndexEntry(firstLine, 0);
+        int low = 0;
+        int high = fileEntries.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (fileEntries[mid] < lowest) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < fileEntries.length && (int) (fileEntries[i] >> 32) <= lastLine; i++) {
+            result.add(nodes.get((int) fileEntries[i]));
+        }
+    }
+
+    // a growable array of entries, used while the index is built
+    private static final class Entries {
+        private long[] values = new long[8];
+        private int size;
+
+        private void add(final long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size + (size >> 1));
+            }
+            values[size++] = value;
+        }
+    }
+}
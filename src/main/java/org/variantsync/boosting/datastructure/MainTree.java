@@ -31,6 +31,19 @@ public class MainTree implements Serializable {
         inversePositionMap = null;
     }
 
+    /**
+     * Initializes a MainTree object with the given AbstractAST tree and the positions in the products that
+     * correspond to its nodes, e.g., when the main tree is loaded from a file.
+     *
+     * @param tree        the AbstractAST tree to be set for this MainTree
+     * @param positionMap the product positions of each node of the tree
+     */
+    public MainTree(final AbstractAST tree, final Map<ASTNode, Set<ProductPosition>> positionMap) {
+        this.tree = tree;
+        this.positionMap = positionMap;
+        inversePositionMap = null;
+    }
+
     /**
      * Merges the Abstract Syntax Tree (AST) of the given product into the of this
      * main AST (main tree) and returns the set of all nodes
@@ -43,7 +56,6 @@ public class MainTree implements Serializable {
     public CustomHashSet<ASTNode> unite(final Variant variant) {
         final CustomHashSet<ASTNode> result = new CustomHashSet<>();
         uniteChildren(result, variant.getProductAst().getRoot(), tree.getRoot(), variant);
-        tree.getAstNodes().addAll(result);
         return result;
     }
 
@@ -56,6 +68,7 @@ public class MainTree implements Serializable {
             final ASTNode mainTreeEquivalent = findSimilarDescendant(productChild, nodeMainTree);
             if (mainTreeEquivalent != null) {
                 result.add(mainTreeEquivalent);
+                variant.setMainTreeNode(productChild, mainTreeEquivalent);
                 productPositions = positionMap.get(mainTreeEquivalent);
                 // update mapping of the main tree node
                 if (productChild.getMapping() != null) {
@@ -73,9 +86,13 @@ public class MainTree implements Serializable {
                 // add a copy of the product child node to the main tree
                 final ASTNode childToAdd = new ASTNode(nodeMainTree, productChild.getCode(),
                         UnspecifiedPosition.INSTANCE, productChild.getType(), productChild.getMapping());
-                nodeMainTree.addChild(childToAdd);
+                // the copy keeps the sequence number, so that it is similar to the product child
+                childToAdd.setSequenceNumber(productChild.getSequenceNumber());
+                nodeMainTree.getChildren().add(childToAdd);
+                tree.getAstNodes().append(childToAdd);
                 childToAdd.setParent(nodeMainTree);
                 result.add(childToAdd);
+                variant.setMainTreeNode(productChild, childToAdd);
                 positionMap.put(childToAdd, productPositions);
                 // add the new node and all its children to the result (since they become
                 // corresponding nodes of the main tree)
@@ -102,13 +119,16 @@ public class MainTree implements Serializable {
     }
 
     private void addAllSubNodes(final CustomHashSet<ASTNode> result, final ASTNode mainTreeParent,
-                                final CustomHashSet<ASTNode> productChildren, final Variant variant) {
+                                final ChildSet productChildren, final Variant variant) {
         for (final ASTNode child : productChildren) {
             final ASTNode childCopy = new ASTNode(mainTreeParent, child.getCode(), UnspecifiedPosition.INSTANCE,
                     child.getType(), child.getMapping());
-            mainTreeParent.addChild(childCopy);
+            childCopy.setSequenceNumber(child.getSequenceNumber());
+            mainTreeParent.getChildren().add(childCopy);
+            tree.getAstNodes().append(childCopy);
             childCopy.setParent(mainTreeParent);
             result.add(childCopy);
+            variant.setMainTreeNode(child, childCopy);
             final Set<ProductPosition> productPositions = new HashSet<>();
             productPositions.add(new ProductPosition(variant, child.getStartPosition()));
             positionMap.put(childCopy, productPositions);
@@ -1,7 +1,13 @@
 package org.variantsync.boosting.datastructure;
 
+import org.variantsync.boosting.TraceBoosting;
+
 import org.logicng.formulas.Literal;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.Objects;
 
 /**
@@ -11,8 +17,8 @@ import java.util.Objects;
  * This class encapsulates a set of literals and provides methods for comparing
  * modules and retrieving information about the literals it contains.
  */
-public class Module {
-    private final CustomHashSet<Literal> literals;
+public class Module implements Serializable {
+    private transient CustomHashSet<Literal> literals;
 
     /**
      * Constructs a new Module with the given set of literals.
@@ -66,4 +72,24 @@ public class Module {
     public int size() {
         return literals.size();
     }
+
+    private void writeObject(final ObjectOutputStream oos) throws IOException {
+        oos.defaultWriteObject();
+        // Literals are not serializable; we store their variable names and phases instead
+        oos.writeInt(literals.size());
+        for (final Literal literal : literals) {
+            oos.writeUTF(literal.name());
+            oos.writeBoolean(literal.phase());
+        }
+    }
+
+    private void readObject(final ObjectInputStream ois) throws ClassNotFoundException, IOException {
+        ois.defaultReadObject();
+        final int size = ois.readInt();
+        this.literals = new CustomHashSet<>();
+        for (int i = 0; i < size; i++) {
+            final String name = ois.readUTF();
+            this.literals.add(TraceBoosting.f.literal(name, ois.readBoolean()));
+        }
+    }
 }
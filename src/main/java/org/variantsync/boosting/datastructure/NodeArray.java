@@ -0,0 +1,96 @@
+package org.variantsync.boosting.datastructure;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The nodes of an AST, except its root, in an array.
+ * <p>
+ * Each node gets a dense id, its index in the array, which is stored in the node (see {@link ASTNode#getId()}),
+ * so that membership is checked without hashing and data about the nodes can be kept in arrays indexed by id. The
+ * nodes of a parsed AST are in pre-order; nodes that are added to a main tree later are appended in the order in
+ * which they are created. A node belongs to the nodes of at most one AST.
+ * <p>
+ * The set cannot be modified through its methods.
+ */
+public class NodeArray extends AbstractSet<ASTNode> implements Serializable {
+    private ASTNode[] nodes;
+    private int size;
+
+    /**
+     * Constructs a NodeArray of the given nodes and assigns their ids in the order of the collection.
+     *
+     * @param nodes the nodes, which must be distinct
+     */
+    public NodeArray(final Collection<ASTNode> nodes) {
+        this.nodes = new ASTNode[Math.max(nodes.size(), 16)];
+        for (final ASTNode node : nodes) {
+            append(node);
+        }
+    }
+
+    /**
+     * Returns the node with the given id.
+     *
+     * @param id the id of the node
+     * @return the node
+     * @throws IndexOutOfBoundsException if there is no node with the id
+     */
+    public ASTNode get(final int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Id " + id + " of " + size + " nodes");
+        }
+        return nodes[id];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+        if (!(o instanceof ASTNode)) {
+            return false;
+        }
+        final int id = ((ASTNode) o).getId();
+        return id >= 0 && id < size && nodes[id] == o;
+    }
+
+    @Override
+    public Iterator<ASTNode> iterator() {
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public ASTNode next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return nodes[next++];
+            }
+        };
+    }
+
+    /**
+     * Appends a node and assigns it the next id.
+     *
+     * @param node the node, which must not be contained yet
+     */
+    void append(final ASTNode node) {
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, size + (size >> 1));
+        }
+        node.setId(size);
+        nodes[size++] = node;
+    }
+}
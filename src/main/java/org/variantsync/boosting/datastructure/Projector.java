@@ -0,0 +1,319 @@
+package org.variantsync.boosting.datastructure;
+
+import org.logicng.formulas.BinaryOperator;
+import org.logicng.formulas.FType;
+import org.logicng.formulas.Formula;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Not;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Projects the main tree onto configurations, i.e., determines the nodes whose mappings a configuration satisfies.
+ * <p>
+ * Each distinct mapping of the main tree is compiled once into a short postfix program over the ids of the
+ * variables in the mappings. A program evaluates 64 configurations at once: each variable is a word whose i-th bit
+ * is its value in the i-th configuration, and the connectives are evaluated with bitwise operations. To project a
+ * single configuration, each mapping is evaluated once, and the nodes take the value of their mapping.
+ * <p>
+ * A configuration is the set of its selected features; the variables of the mappings that are not selected are
+ * false. Nodes without mapping are part of every projection. The projector is a snapshot of the mappings at the
+ * time it is built and may be used by several threads at once.
+ */
+public class Projector {
+    // the operations of the programs; the upper bits of an instruction hold the operand
+    private static final int VARIABLE = 0;
+    private static final int NEGATED_VARIABLE = 1;
+    private static final int TRUE = 2;
+    private static final int FALSE = 3;
+    private static final int NOT = 4;
+    private static final int AND = 5;
+    private static final int OR = 6;
+    private static final int EQUIVALENCE = 7;
+    private static final int OPERATION_BITS = 3;
+
+    private final MainTree mainTree;
+    private final NodeArray nodes;
+    private final Map<String, Integer> variableIds = new HashMap<>();
+    // the index of the program of the mapping of each node, by node id, or -1 if the node has no mapping
+    private final int[] nodeMappings;
+    // the programs of all mappings, one after the other; the program of mapping m starts at programStarts[m]
+    private int[] instructions = new int[64];
+    private int[] programStarts = new int[17];
+    private int numberOfMappings;
+    private int numberOfInstructions;
+    private int stackSize;
+
+    /**
+     * Builds a projector for the current mappings of a main tree.
+     *
+     * @param mainTree the main tree, usually as returned by the computation of the mappings
+     * @throws IllegalArgumentException if a mapping contains pseudo-Boolean constraints
+     */
+    public Projector(final MainTree mainTree) {
+        this.mainTree = mainTree;
+        this.nodes = mainTree.getTree().getAstNodes();
+        this.nodeMappings = new int[nodes.size()];
+        // most nodes share the mapping object of their association; the textual form catches the other duplicates
+        final Map<Formula, Integer> compiled = new IdentityHashMap<>();
+        final Map<String, Integer> compiledByText = new HashMap<>();
+        for (final ASTNode node : nodes) {
+            final Formula mapping = node.getMapping();
+            if (mapping == null) {
+                nodeMappings[node.getId()] = -1;
+                continue;
+            }
+            Integer program = compiled.get(mapping);
+            if (program == null) {
+                program = compiledByText.get(mapping.toString());
+                if (program == null) {
+                    program = compile(mapping);
+                    compiledByText.put(mapping.toString(), program);
+                }
+                compiled.put(mapping, program);
+            }
+            nodeMappings[node.getId()] = program;
+        }
+    }
+
+    /**
+     * Returns the number of distinct mappings, each of which is evaluated once per configuration.
+     */
+    public int getNumberOfMappings() {
+        return numberOfMappings;
+    }
+
+    /**
+     * Returns the main tree of which this projector projects the nodes.
+     */
+    public MainTree getMainTree() {
+        return mainTree;
+    }
+
+    /**
+     * Returns the nodes whose mappings a configuration satisfies.
+     *
+     * @param configuration the selected features
+     * @return the ids of the nodes (see {@link ASTNode#getId()}), which may be modified by the caller
+     */
+    public BitSet project(final Collection<Feature> configuration) {
+        return projectAll(Collections.singletonList(configuration)).get(0);
+    }
+
+    /**
+     * Returns the nodes whose mappings each of the configurations satisfies. The configurations are evaluated in
+     * groups of 64, so that each mapping is evaluated once per group.
+     *
+     * @param configurations the configurations, each given by its selected features
+     * @return the ids of the nodes for each configuration, in the order of the configurations
+     */
+    public List<BitSet> projectAll(final List<? extends Collection<Feature>> configurations) {
+        final List<BitSet> result = new ArrayList<>(configurations.size());
+        for (int i = 0; i < configurations.size(); i++) {
+            result.add(new BitSet(nodes.size()));
+        }
+        final long[] variables = new long[variableIds.size()];
+        final long[] values = new long[numberOfMappings];
+        final long[] stack = new long[Math.max(stackSize, 1)];
+        for (int first = 0; first < configurations.size(); first += Long.SIZE) {
+            final int count = Math.min(Long.SIZE, configurations.size() - first);
+            final long all = count == Long.SIZE ? -1L : (1L << count) - 1;
+            Arrays.fill(variables, 0L);
+            for (int i = 0; i < count; i++) {
+                for (final Feature feature : configurations.get(first + i)) {
+                    final Integer id = variableIds.get(feature.getName());
+                    if (id != null) {
+                        variables[id] |= 1L << i;
+                    }
+                }
+            }
+            for (int m = 0; m < numberOfMappings; m++) {
+                values[m] = evaluate(m, variables, stack);
+            }
+            for (int id = 0; id < nodeMappings.length; id++) {
+                long selected = nodeMappings[id] < 0 ? all : values[nodeMappings[id]] & all;
+                while (selected != 0) {
+                    result.get(first + Long.numberOfTrailingZeros(selected)).set(id);
+                    selected &= selected - 1;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the files of a projection with their content. A file is part of the projection if the nodes of the
+     * file and of its folders are.
+     *
+     * @param projection the ids of the nodes of the projection, as returned by {@link #project(Collection)}
+     * @return for each file, by its path relative to the root of the variant, the nodes of its content that are
+     * part of the projection, in source order; for line-based ASTs, the i-th node is the i-th line of the file
+     */
+    public Map<String, List<ASTNode>> layout(final BitSet projection) {
+        final Map<String, List<ASTNode>> files = new LinkedHashMap<>();
+        layoutFolder(mainTree.getTree().getRoot(), "", projection, files);
+        return files;
+    }
+
+    private void layoutFolder(final ASTNode folder, final String path, final BitSet projection,
+                              final Map<String, List<ASTNode>> files) {
+        for (final ASTNode child : folder.getChildren()) {
+            if (!projection.get(child.getId())) {
+                continue;
+            }
+            if (child.getType() == ASTNode.NODE_TYPE.FOLDER) {
+                layoutFolder(child, path + child.getCode() + "/", projection, files);
+            } else if (child.getType() == ASTNode.NODE_TYPE.FILE) {
+                files.put(path + child.getCode(), layoutFile(child, projection));
+            }
+        }
+    }
+
+    private static List<ASTNode> layoutFile(final ASTNode file, final BitSet projection) {
+        final List<ASTNode> content = new ArrayList<>();
+        final Deque<ASTNode> stack = new ArrayDeque<>();
+        pushChildren(stack, file);
+        while (!stack.isEmpty()) {
+            final ASTNode node = stack.pop();
+            if (projection.get(node.getId())) {
+                content.add(node);
+            }
+            pushChildren(stack, node);
+        }
+        return content;
+    }
+
+    // in reverse, so that the children are popped in source order
+    private static void pushChildren(final Deque<ASTNode> stack, final ASTNode node) {
+        final ChildSet children = node.getChildren();
+        for (int i = children.size() - 1; i >= 0; i--) {
+            stack.push(children.get(i));
+        }
+    }
+
+    private long evaluate(final int mapping, final long[] variables, final long[] stack) {
+        int top = 0;
+        for (int pc = programStarts[mapping]; pc < programStarts[mapping + 1]; pc++) {
+            final int instruction = instructions[pc];
+            final int operand = instruction >>> OPERATION_BITS;
+            switch (instruction & ((1 << OPERATION_BITS) - 1)) {
+                case VARIABLE:
+                    stack[top++] = variables[operand];
+                    break;
+                case NEGATED_VARIABLE:
+                    stack[top++] = ~variables[operand];
+                    break;
+                case TRUE:
+                    stack[top++] = -1L;
+                    break;
+                case FALSE:
+                    stack[top++] = 0L;
+                    break;
+                case NOT:
+                    stack[top - 1] = ~stack[top - 1];
+                    break;
+                case AND: {
+                    long value = stack[--top];
+                    for (int i = 1; i < operand; i++) {
+                        value &= stack[--top];
+                    }
+                    stack[top++] = value;
+                    break;
+                }
+                case OR: {
+                    long value = stack[--top];
+                    for (int i = 1; i < operand; i++) {
+                        value |= stack[--top];
+                    }
+                    stack[top++] = value;
+                    break;
+                }
+                default: {
+                    final long value = stack[--top];
+                    stack[top - 1] = ~(stack[top - 1] ^ value);
+                    break;
+                }
+            }
+        }
+        return stack[0];
+    }
+
+    private int compile(final Formula mapping) {
+        if (numberOfMappings + 1 == programStarts.length) {
+            programStarts = Arrays.copyOf(programStarts, programStarts.length * 2);
+        }
+        programStarts[numberOfMappings] = numberOfInstructions;
+        stackSize = Math.max(stackSize, emit(mapping, 0));
+        programStarts[numberOfMappings + 1] = numberOfInstructions;
+        return numberOfMappings++;
+    }
+
+    // appends the program of a formula whose value is pushed at the given stack depth, and returns the maximum depth
+    private int emit(final Formula formula, final int depth) {
+        switch (formula.type()) {
+            case TRUE:
+                append(TRUE, 0);
+                return depth + 1;
+            case FALSE:
+                append(FALSE, 0);
+                return depth + 1;
+            case LITERAL: {
+                final Literal literal = (Literal) formula;
+                final int id = variableIds.computeIfAbsent(literal.name(), name -> variableIds.size());
+                append(literal.phase() ? VARIABLE : NEGATED_VARIABLE, id);
+                return depth + 1;
+            }
+            case NOT: {
+                final int maxDepth = emit(((Not) formula).operand(), depth);
+                append(NOT, 0);
+                return maxDepth;
+            }
+            case IMPL: {
+                // a => b as ~a | b
+                final BinaryOperator implication = (BinaryOperator) formula;
+                int maxDepth = emit(implication.left(), depth);
+                append(NOT, 0);
+                maxDepth = Math.max(maxDepth, emit(implication.right(), depth + 1));
+                append(OR, 2);
+                return maxDepth;
+            }
+            case EQUIV: {
+                final BinaryOperator equivalence = (BinaryOperator) formula;
+                final int maxDepth = Math.max(emit(equivalence.left(), depth), emit(equivalence.right(), depth + 1));
+                append(EQUIVALENCE, 0);
+                return maxDepth;
+            }
+            case AND:
+            case OR: {
+                int maxDepth = depth;
+                int count = 0;
+                for (final Formula operand : formula) {
+                    maxDepth = Math.max(maxDepth, emit(operand, depth + count));
+                    count++;
+                }
+                append(formula.type() == FType.AND ? AND : OR, count);
+                return maxDepth;
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported mapping: " + formula);
+        }
+    }
+
+    private void append(final int operation, final int operand) {
+        if (numberOfInstructions == instructions.length) {
+            instructions = Arrays.copyOf(instructions, instructions.length * 2);
+        }
+        instructions[numberOfInstructions++] = operand << OPERATION_BITS | operation;
+    }
+}
@@ -1,16 +1,29 @@
 package org.variantsync.boosting.parsing;
 
+import org.tinylog.Logger;
+
 import org.variantsync.boosting.datastructure.ASTNode;
-import org.variantsync.boosting.datastructure.CustomHashSet;
+import org.variantsync.boosting.datastructure.ChildSet;
+import org.variantsync.boosting.datastructure.NodeArray;
 import org.variantsync.boosting.position.FilePosition;
 import org.variantsync.boosting.position.RootPosition;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * AbstractAST is an abstract class representing an Abstract Syntax Tree (AST)
@@ -20,8 +33,10 @@ import java.util.Set;
  */
 public abstract class AbstractAST implements Serializable {
     protected final ASTNode root;
-    protected final CustomHashSet<ASTNode> astNodes;
+    protected final NodeArray astNodes;
     protected final Set<String> fileTypes;
+    // the options with which the files are parsed; only needed while the AST is created
+    protected final transient ParseOptions parseOptions;
 
     /**
      * Constructs an AbstractAST with no filtering based on file types.
@@ -31,8 +46,9 @@ public abstract class AbstractAST implements Serializable {
     public AbstractAST(final String... fileTypes) {
         this.fileTypes = new HashSet<>();
         Collections.addAll(this.fileTypes, fileTypes);
+        this.parseOptions = new ParseOptions();
         root = new ASTNode(null, null, RootPosition.INSTANCE, ASTNode.NODE_TYPE.ROOT, null);
-        astNodes = new CustomHashSet<>();
+        astNodes = new NodeArray(Collections.emptyList());
     }
 
     /**
@@ -42,10 +58,53 @@ public abstract class AbstractAST implements Serializable {
      * @param fileTypes an array of file types to filter the AST nodes by
      */
     public AbstractAST(final File rootFile, final String... fileTypes) {
+        this(rootFile, new ParseOptions(), fileTypes);
+    }
+
+    /**
+     * Constructs an AbstractAST with filtering based on file types, parsing the files with the given options.
+     *
+     * @param rootFile     the root file to build the AST from; a folder, an archive, or a folder within an archive
+     * @param parseOptions the options with which the files are parsed
+     * @param fileTypes    an array of file types to filter the AST nodes by
+     */
+    public AbstractAST(final File rootFile, final ParseOptions parseOptions, final String... fileTypes) {
+        this.fileTypes = new HashSet<>();
+        Collections.addAll(this.fileTypes, fileTypes);
+        this.parseOptions = parseOptions;
+        root = new ASTNode(null, null, RootPosition.INSTANCE, ASTNode.NODE_TYPE.ROOT, null);
+        FileTree.collect(rootFile, fileTypes, parseOptions.getIngestionFilter(), new FileTree.Visitor() {
+            @Override
+            public ASTNode visitContent(final FileTree.Entry entry, final byte[] content) {
+                // the node is attached to its folder when the tree is visited
+                final ASTNode fileNode = new ASTNode(null, entry.name, new FilePosition(entry.path),
+                        ASTNode.NODE_TYPE.FILE, null);
+                parseContent(fileNode, entry, content);
+                return fileNode;
+            }
+
+            @Override
+            public void visitTree(final FileTree.Entry rootEntry) {
+                visitFileTree(rootEntry);
+            }
+        });
+        astNodes = collectAstNodes();
+    }
+
+    /**
+     * Constructs an AbstractAST from the sources in a revision of a git repository, with filtering based on file
+     * types, parsing the files with the given options.
+     *
+     * @param revision     the revision and folder to build the AST from
+     * @param parseOptions the options with which the files are parsed
+     * @param fileTypes    an array of file types to filter the AST nodes by
+     */
+    public AbstractAST(final GitRevision revision, final ParseOptions parseOptions, final String... fileTypes) {
         this.fileTypes = new HashSet<>();
         Collections.addAll(this.fileTypes, fileTypes);
+        this.parseOptions = parseOptions;
         root = new ASTNode(null, null, RootPosition.INSTANCE, ASTNode.NODE_TYPE.ROOT, null);
-        visitFile(root, rootFile);
+        visitFileTree(FileTree.collect(revision, fileTypes, parseOptions.getIngestionFilter()));
         astNodes = collectAstNodes();
     }
 
@@ -54,64 +113,96 @@ public abstract class AbstractAST implements Serializable {
      * optional filtering based on file types.
      * 
      * @param root      the root node of the AST
-     * @param astNodes  the set of AST nodes in the tree
+     * @param astNodes  the AST nodes in the tree, except the root, which get their ids in this order
      * @param fileTypes an array of file types to filter the AST nodes by
      */
-    public AbstractAST(final ASTNode root, final CustomHashSet<ASTNode> astNodes,
+    public AbstractAST(final ASTNode root, final Collection<ASTNode> astNodes,
             final String... fileTypes) {
         this.fileTypes = new HashSet<>();
         Collections.addAll(this.fileTypes, fileTypes);
+        this.parseOptions = new ParseOptions();
         this.root = root;
-        this.astNodes = astNodes;
+        this.astNodes = new NodeArray(astNodes);
     }
 
     /**
      * Collects all nodes (except the root node) of the Abstract Syntax Tree (AST)
-     * in one set to simplify their access.
+     * in one set to simplify their access. The nodes get their ids in pre-order.
      * 
      * @return a set containing all nodes of the AST
      */
-    public CustomHashSet<ASTNode> collectAstNodes() {
-        final CustomHashSet<ASTNode> result = new CustomHashSet<>();
-        final ArrayList<ASTNode> nodesToVisit = new ArrayList<>();
-        nodesToVisit.add(this.getRoot());
+    public NodeArray collectAstNodes() {
+        final List<ASTNode> result = new ArrayList<>();
+        // pre-order traversal with an explicit stack, as trees can be deep
+        final ArrayDeque<ASTNode> nodesToVisit = new ArrayDeque<>(this.getRoot().getChildren());
         while (!nodesToVisit.isEmpty()) {
-            result.add(nodesToVisit.get(0));
-            nodesToVisit.addAll(nodesToVisit.remove(0).getChildren());
+            final ASTNode node = nodesToVisit.pop();
+            result.add(node);
+            final ChildSet children = node.getChildren();
+            for (int i = children.size() - 1; i >= 0; i--) {
+                nodesToVisit.push(children.get(i));
+            }
         }
-        result.remove(root);
-        return result;
+        return new NodeArray(result);
     }
 
     /**
-     * Creates the AST from a file.
-     * 
-     * @param parent     - the parent ASTNode to which the file belongs
-     * @param parentFile - the File object representing the parent directory
+     * Creates the AST from the collected folders and files (see {@link FileTree}). Files whose names do not end
+     * with one of the file types or that are skipped by the ingestion filter have already been recognized while
+     * collecting the files, and files in tar archives have already been parsed while the archive was read. The
+     * folders and files are added to the AST in the order of their names.
+     *
+     * @param rootEntry - the collected root folder, or null if there is none
      */
-    private void visitFile(final ASTNode parent, final File parentFile) {
-        final File[] children = parentFile.listFiles();
-        if (children == null)
+    private void visitFileTree(final FileTree.Entry rootEntry) {
+        if (rootEntry == null) {
             return;
-        for (final File childFile : children) {
-            if (childFile.isFile()) {
-                final ASTNode fileNode = new ASTNode(parent, childFile.getName(),
-                        new FilePosition(childFile.toString()), ASTNode.NODE_TYPE.FILE, null);
+        }
+        if (parseOptions.isParallelFiles()) {
+            // create the nodes of all folders and files first, then parse the contents of the files in parallel
+            final List<ASTNode> fileNodes = new ArrayList<>();
+            final List<FileTree.Entry> files = new ArrayList<>();
+            visitFileTreeEntries(root, rootEntry, fileNodes, files);
+            ForkJoinPool.commonPool().invoke(new FileContentTask(fileNodes, files, 0, files.size()));
+        } else {
+            visitFileTreeEntries(root, rootEntry, null, null);
+        }
+    }
+
+    /**
+     * Adds the nodes of the entries of a folder to the AST.
+     *
+     * @param parent    - the parent ASTNode to which the entries belong
+     * @param directory - the folder
+     * @param fileNodes - collects the nodes of the files whose content is visited later, or null to visit the
+     *                  content of each file right away
+     * @param files     - collects the files whose content is visited later, or null
+     */
+    private void visitFileTreeEntries(final ASTNode parent, final FileTree.Entry directory,
+                                      final List<ASTNode> fileNodes, final List<FileTree.Entry> files) {
+        for (final FileTree.Entry entry : directory.children) {
+            if (entry.children == null && entry.fileNode != null) {
+                final ASTNode fileNode = entry.fileNode;
+                entry.fileNode = null;
+                fileNode.setParent(parent);
                 parent.addChild(fileNode);
-                if (fileTypes.isEmpty()) {
-                    // If there are no file types specified, we assume that all should be used
-                    visitFileContent(fileNode, childFile);
-                } else if (fileTypes.stream()
-                        .anyMatch(t -> childFile.getAbsolutePath().endsWith(t))) {
-                    visitFileContent(fileNode, childFile);
+            } else if (entry.children == null) {
+                final ASTNode fileNode = new ASTNode(parent, entry.name, new FilePosition(entry.path),
+                        ASTNode.NODE_TYPE.FILE, null);
+                parent.addChild(fileNode);
+                if (entry.parse) {
+                    if (fileNodes == null) {
+                        parseFile(fileNode, entry);
+                    } else {
+                        fileNodes.add(fileNode);
+                        files.add(entry);
+                    }
                 }
-            } else if (childFile.isDirectory()) {
-                final ASTNode directoryNode = new ASTNode(parent, childFile.getName(),
-                        new FilePosition(childFile.toString()), ASTNode.NODE_TYPE.FOLDER, null);
-                parent.addChild(directoryNode);
-                visitFile(directoryNode, childFile);
             } else {
-                System.out.println("File error, neither file nor directory");
+                final ASTNode directoryNode = new ASTNode(parent, entry.name, new FilePosition(entry.path),
+                        ASTNode.NODE_TYPE.FOLDER, null);
+                parent.addChild(directoryNode);
+                visitFileTreeEntries(directoryNode, entry, fileNodes, files);
             }
         }
     }
@@ -130,6 +221,113 @@ public abstract class AbstractAST implements Serializable {
      */
     protected abstract void visitFileContent(final ASTNode fileNode, final File fileToVisit);
 
+    /**
+     * Visits the content of a file that has already been read. Subclasses should override this method to parse
+     * the given content; by default, the file is visited with {@link #visitFileContent(ASTNode, File)}.
+     *
+     * @param fileNode The ASTNode representing the file to be visited.
+     * @param filePath The path of the file, as used in the positions of the created nodes.
+     * @param content  The content of the file.
+     */
+    protected void visitFileContent(final ASTNode fileNode, final String filePath, final byte[] content) {
+        visitFileContent(fileNode, new File(filePath));
+    }
+
+    /**
+     * Returns the version of the parser with which this AST visits file contents. Parsed contents that have been
+     * cached on disk are only reused by ASTs of the same class and parser version, so subclasses have to change
+     * the version whenever the nodes created for a file change.
+     *
+     * @return the version of the parser
+     */
+    protected String getParserVersion() {
+        return "1";
+    }
+
+    private void parseFile(final ASTNode fileNode, final FileTree.Entry entry) {
+        final ParseCache parseCache = parseOptions.getParseCache();
+        final IngestionFilter filter = parseOptions.getIngestionFilter();
+        final boolean checkContent = filter != null && filter.isSkipBinaryFiles();
+        byte[] content = null;
+        if (entry.repository != null && (parseCache == null || checkContent)) {
+            content = entry.repository.readBlob(entry.contentId);
+        } else if (entry.file != null) {
+            // files in zip archives are read through the zip file system, which cannot be converted to a File
+            if (parseCache == null && !checkContent && entry.file.getFileSystem() == FileSystems.getDefault()) {
+                visitFileContent(fileNode, entry.file.toFile());
+                return;
+            }
+            try {
+                content = Files.readAllBytes(entry.file);
+            } catch (final IOException e) {
+                Logger.error("Was not able to read file " + entry.file, e);
+                throw new UncheckedIOException(e);
+            }
+        }
+        parseContent(fileNode, entry, content);
+    }
+
+    /**
+     * Visits the content of a file, unless the ingestion filter rejects it, through the parse cache if there is one.
+     *
+     * @param fileNode the node of the file
+     * @param entry    the entry of the file
+     * @param content  the content of the file, or null for a file in a git repository whose content has not been read
+     */
+    private void parseContent(final ASTNode fileNode, final FileTree.Entry entry, final byte[] content) {
+        final ParseCache parseCache = parseOptions.getParseCache();
+        final IngestionFilter filter = parseOptions.getIngestionFilter();
+        if (filter != null && filter.isSkipBinaryFiles() && !filter.acceptsContent(Paths.get(entry.path), content)) {
+            return;
+        }
+        final String filePath = entry.path;
+        final byte[] fileContent = content;
+        if (parseCache == null) {
+            visitFileContent(fileNode, filePath, fileContent);
+        } else if (entry.contentId != null) {
+            // the content of files in git repositories is identified by the blob id and only read if needed
+            parseCache.visitFileContent(this, fileNode, filePath, "git" + entry.contentId,
+                    node -> visitFileContent(node, filePath,
+                            fileContent != null ? fileContent : entry.repository.readBlob(entry.contentId)));
+        } else {
+            parseCache.visitFileContent(this, fileNode, filePath, fileContent,
+                    node -> visitFileContent(node, filePath, fileContent));
+        }
+    }
+
+    /**
+     * Parses the contents of a range of files in parallel. Each file is parsed below its own file node, which has
+     * already been attached to its folder, so the structure of the AST does not depend on the order in which the
+     * files are parsed.
+     */
+    private class FileContentTask extends RecursiveAction {
+        private final List<ASTNode> fileNodes;
+        private final List<FileTree.Entry> files;
+        private final int from;
+        private final int to;
+
+        private FileContentTask(final List<ASTNode> fileNodes, final List<FileTree.Entry> files, final int from,
+                                final int to) {
+            this.fileNodes = fileNodes;
+            this.files = files;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                for (int i = from; i < to; i++) {
+                    parseFile(fileNodes.get(i), files.get(i));
+                }
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new FileContentTask(fileNodes, files, from, middle),
+                    new FileContentTask(fileNodes, files, middle, to));
+        }
+    }
+
     /**
      * Returns the root node of the Abstract Syntax Tree (AST).
      *
@@ -140,11 +338,11 @@ public abstract class AbstractAST implements Serializable {
     }
 
     /**
-     * Returns a set of all AST nodes in the tree.
+     * Returns a set of all AST nodes in the tree, except the root, in the order of their ids.
      *
-     * @return a set of all AST nodes
+     * @return a read-only set of all AST nodes
      */
-    public CustomHashSet<ASTNode> getAstNodes() {
+    public NodeArray getAstNodes() {
         return astNodes;
     }
 
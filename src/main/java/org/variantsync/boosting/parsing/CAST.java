@@ -1,9 +1,9 @@
 package org.variantsync.boosting.parsing;
 
 import java.io.File;
+import java.util.Collection;
 
 import org.variantsync.boosting.datastructure.ASTNode;
-import org.variantsync.boosting.datastructure.CustomHashSet;
 
 /**
  * Represents a Syntax Tree (CAST) for C source code files.
@@ -33,14 +33,37 @@ public class CAST extends LineAST {
         super(rootFile, fileTypes);
     }
 
+    /**
+     * Constructs a new CAST object with the specified root file and default file
+     * types ".c" and ".h", parsing the files with the given options.
+     *
+     * @param rootFile     The root file for the CAST.
+     * @param parseOptions The options with which the files are parsed.
+     */
+    public CAST(final File rootFile, final ParseOptions parseOptions) {
+        super(rootFile, parseOptions, fileTypes);
+    }
+
+    /**
+     * Constructs a new CAST object from the sources in a revision of a git
+     * repository with default file types ".c" and ".h", parsing the files with
+     * the given options.
+     *
+     * @param revision     The revision and folder for the CAST.
+     * @param parseOptions The options with which the files are parsed.
+     */
+    public CAST(final GitRevision revision, final ParseOptions parseOptions) {
+        super(revision, parseOptions, fileTypes);
+    }
+
     /**
      * Constructs a new CAST object with the specified root node and AST nodes, and
      * default file types ".c" and ".h".
      * 
      * @param root     The root node for the CAST.
-     * @param astNodes The set of AST nodes for the CAST.
+     * @param astNodes The AST nodes for the CAST, except the root.
      */
-    public CAST(final ASTNode root, final CustomHashSet<ASTNode> astNodes) {
+    public CAST(final ASTNode root, final Collection<ASTNode> astNodes) {
         super(root, astNodes, fileTypes);
     }
 }
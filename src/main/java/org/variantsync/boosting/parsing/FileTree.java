@@ -0,0 +1,417 @@
+package org.variantsync.boosting.parsing;
+
+import org.tinylog.Logger;
+
+import org.variantsync.boosting.datastructure.ASTNode;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Collects the folders and files from which an AST is created.
+ * <p>
+ * The root file of an AST is either a folder, an archive, or a folder within an archive, such as
+ * {@code snapshots/variant1.tar.gz/src}. Folders are walked once with {@link Files#walkFileTree}, zip and jar
+ * archives are walked through a zip {@link FileSystem}, and tar archives, optionally compressed with gzip, are
+ * read as a stream. No archive is extracted to disk or held in memory: the zip file system stays open while the
+ * collected tree is visited, so that the content of each file is read when it is visited, and the content of each
+ * file in a tar archive is visited as it streams past (see {@link Visitor}). Files and folders in archives get the
+ * paths they would have if the archive were extracted into a folder with the name of the archive.
+ * <p>
+ * Alternatively, the sources are read from a revision of a git repository (see {@link GitRevision}). The contents
+ * of its files are only read when they are visited, and their blob ids identify them in the {@link ParseCache}.
+ */
+final class FileTree {
+    private static final String[] ZIP_SUFFIXES = { ".zip", ".jar" };
+    private static final String[] TAR_SUFFIXES = { ".tar" };
+    private static final String[] TAR_GZIP_SUFFIXES = { ".tar.gz", ".tgz" };
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * A folder or file of the tree.
+     */
+    static final class Entry {
+        final String name;
+        // the path of the folder or file, as used in the positions of its nodes
+        final String path;
+        // the path from which the content of a file is read, on disk or in a zip file system, or null
+        final Path file;
+        // the entries of a folder, or null for a file
+        final List<Entry> children;
+        // whether the content of a file is visited
+        final boolean parse;
+        // the repository from which the content of a file is read, or null if it is not in a git repository
+        final GitRepository repository;
+        // the blob id of a file in a git repository, or null
+        final String contentId;
+        // the node of a file in a tar archive, whose content has been visited while the archive was read, or null
+        ASTNode fileNode;
+
+        private Entry(final String name, final String path, final Path file, final boolean directory,
+                      final boolean parse) {
+            this(name, path, file, directory, parse, null, null);
+        }
+
+        private Entry(final String name, final String path, final Path file, final boolean directory,
+                      final boolean parse, final GitRepository repository, final String contentId) {
+            this.name = name;
+            this.path = path;
+            this.file = file;
+            this.children = directory ? new ArrayList<>() : null;
+            this.parse = parse;
+            this.repository = repository;
+            this.contentId = contentId;
+        }
+    }
+
+    /**
+     * Visits the collected tree and the contents of the files that are streamed from tar archives.
+     */
+    interface Visitor {
+        /**
+         * Visits the content of a file in a tar archive as it streams past, before the tree has been collected.
+         *
+         * @param entry   the entry of the file
+         * @param content the content of the file
+         * @return the node of the file with the visited content, which is not attached to a parent yet
+         */
+        ASTNode visitContent(Entry entry, byte[] content);
+
+        /**
+         * Visits the collected tree. Zip archives are still open, so that the contents of their files can be read.
+         *
+         * @param root the entry of the root file, or null if the root file is neither a folder nor within an archive
+         */
+        void visitTree(Entry root);
+    }
+
+    private final String[] fileTypes;
+    // the filter for the folders and files, or null
+    private final IngestionFilter filter;
+
+    private FileTree(final String[] fileTypes, final IngestionFilter filter) {
+        this.fileTypes = fileTypes;
+        this.filter = filter;
+    }
+
+    /**
+     * Collects the folders and files below the given root file and visits them. The entries of each folder are
+     * sorted by name.
+     *
+     * @param rootFile  the folder, archive, or folder within an archive
+     * @param fileTypes the suffixes of the files whose content is visited, or none to visit all files
+     * @param filter    the filter for the folders and files, or null
+     * @param visitor   visits the contents of files in tar archives and then the collected tree
+     * @throws UncheckedIOException if the folders or the archive cannot be read
+     */
+    static void collect(final File rootFile, final String[] fileTypes, final IngestionFilter filter,
+                        final Visitor visitor) {
+        final FileTree fileTree = new FileTree(fileTypes, filter);
+        final Path rootPath = rootFile.toPath();
+        try {
+            if (Files.isDirectory(rootPath)) {
+                visitor.visitTree(fileTree.walk(rootPath, rootPath));
+                return;
+            }
+            for (Path archive = rootPath; archive != null; archive = archive.getParent()) {
+                if (isArchive(archive) && Files.isRegularFile(archive)) {
+                    fileTree.readArchive(archive, archive.relativize(rootPath).toString(), rootPath, visitor);
+                    return;
+                }
+            }
+        } catch (final IOException e) {
+            Logger.error("Was not able to read the files in " + rootFile, e);
+            throw new UncheckedIOException(e);
+        }
+        visitor.visitTree(null);
+    }
+
+    /**
+     * Collects the folders and files of a folder in the tree of a git revision. The entries of each folder are
+     * sorted by name.
+     *
+     * @param revision  the revision and folder
+     * @param fileTypes the suffixes of the files whose content is visited, or none to visit all files
+     * @param filter    the filter for the folders and files, or null
+     * @return the entry of the folder
+     * @throws UncheckedIOException if git cannot be run or the revision does not exist
+     */
+    static Entry collect(final GitRevision revision, final String[] fileTypes, final IngestionFilter filter) {
+        final FileTree fileTree = new FileTree(fileTypes, filter);
+        final GitRepository repository = revision.getRepository();
+        final String folder = revision.getFolder();
+        final String revisionPrefix = revision.getRevision() + ":";
+        final int slash = folder.lastIndexOf('/');
+        final Entry root = new Entry(folder.substring(slash + 1), revisionPrefix + folder, null, true, false);
+        // maps the paths of folders relative to the repository to their entries, or to null if they are excluded
+        final Map<String, Entry> directories = new HashMap<>();
+        directories.put(folder, root);
+        final List<GitRepository.TreeEntry> treeEntries = repository.listTree(revision.getRevision(), folder);
+        // ls-tree lists folders before their contents
+        for (final GitRepository.TreeEntry treeEntry : treeEntries) {
+            final int nameStart = treeEntry.path.lastIndexOf('/') + 1;
+            final Entry parent = directories.get(nameStart == 0 ? "" : treeEntry.path.substring(0, nameStart - 1));
+            if (parent == null) {
+                if (treeEntry.directory) {
+                    directories.put(treeEntry.path, null);
+                }
+                continue;
+            }
+            final Path relativePath = Paths.get(folder.isEmpty() ? treeEntry.path
+                    : treeEntry.path.substring(folder.length() + 1));
+            final Path path = Paths.get(revisionPrefix + treeEntry.path);
+            final String name = treeEntry.path.substring(nameStart);
+            Entry entry = null;
+            if (treeEntry.directory) {
+                if (filter == null || filter.acceptsFolder(relativePath, path)) {
+                    entry = new Entry(name, revisionPrefix + treeEntry.path, null, true, false);
+                }
+                directories.put(treeEntry.path, entry);
+            } else if (filter == null || filter.acceptsFile(relativePath, path)) {
+                final boolean parse = fileTree.hasFileType(name)
+                        && (filter == null || filter.acceptsSize(path, treeEntry.size));
+                entry = new Entry(name, revisionPrefix + treeEntry.path, null, false, parse, repository,
+                        treeEntry.id);
+            }
+            if (entry != null) {
+                parent.children.add(entry);
+            }
+        }
+        for (final Entry directory : directories.values()) {
+            if (directory != null) {
+                directory.children.sort(Comparator.comparing(entry -> entry.name));
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Checks whether the given file is an archive from which variants can be read, judging by its name.
+     *
+     * @param file the file
+     * @return true if the file is a zip, jar, tar, or gzip-compressed tar archive
+     */
+    static boolean isArchive(final Path file) {
+        final Path fileName = file.getFileName();
+        if (fileName == null) {
+            return false;
+        }
+        final String name = fileName.toString().toLowerCase(Locale.ROOT);
+        return hasSuffix(name, ZIP_SUFFIXES) || hasSuffix(name, TAR_SUFFIXES) || hasSuffix(name, TAR_GZIP_SUFFIXES);
+    }
+
+    private void readArchive(final Path archive, final String innerPath, final Path rootPath,
+                             final Visitor visitor) throws IOException {
+        final String name = archive.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (hasSuffix(name, ZIP_SUFFIXES)) {
+            try (final FileSystem zip = FileSystems.newFileSystem(archive)) {
+                final Path start = zip.getPath("/").resolve(innerPath);
+                visitor.visitTree(Files.isDirectory(start) ? walk(start, rootPath) : null);
+            }
+            return;
+        }
+        InputStream in = new BufferedInputStream(Files.newInputStream(archive), BUFFER_SIZE);
+        if (hasSuffix(name, TAR_GZIP_SUFFIXES)) {
+            in = new GZIPInputStream(in, BUFFER_SIZE);
+        }
+        final Entry root;
+        try (final TarReader tar = new TarReader(in)) {
+            root = readTar(tar, innerPath.replace(File.separatorChar, '/'), rootPath, visitor);
+        }
+        visitor.visitTree(root);
+    }
+
+    /**
+     * Walks a folder on disk or in a zip file system.
+     *
+     * @param start    the folder to walk
+     * @param rootPath the path of the root file, which replaces the start in the paths of the entries
+     */
+    private Entry walk(final Path start, final Path rootPath) throws IOException {
+        final Deque<Entry> directories = new ArrayDeque<>();
+        final Entry[] root = new Entry[1];
+        Files.walkFileTree(start, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) {
+                        final Entry entry = new Entry(fileName(dir), pathOf(dir), dir, true, false);
+                        if (root[0] == null) {
+                            root[0] = entry;
+                        } else if (filter != null && !filter.acceptsFolder(relativePath(dir), dir)) {
+                            return FileVisitResult.SKIP_SUBTREE;
+                        } else {
+                            directories.peek().children.add(entry);
+                        }
+                        directories.push(entry);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                        if (!attrs.isRegularFile()) {
+                            Logger.warn("Skipping " + file + ", as it is neither a file nor a folder");
+                            return FileVisitResult.CONTINUE;
+                        }
+                        final String name = fileName(file);
+                        if (filter == null || filter.acceptsFile(relativePath(file), file)) {
+                            final boolean parse = hasFileType(name)
+                                    && (filter == null || filter.acceptsSize(file, attrs.size()));
+                            directories.peek().children.add(new Entry(name, pathOf(file), file, false, parse));
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(final Path file, final IOException e) {
+                        Logger.warn("Skipping unreadable file " + file + ": " + e);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult postVisitDirectory(final Path dir, final IOException e) {
+                        if (e != null) {
+                            Logger.warn("Was not able to list all files in " + dir + ": " + e);
+                        }
+                        directories.pop().children.sort(Comparator.comparing(entry -> entry.name));
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    private Path relativePath(final Path path) {
+                        final Path relativePath = start.relativize(path);
+                        // glob patterns are matched against paths of the default file system
+                        return relativePath.getFileSystem() == FileSystems.getDefault()
+                                ? relativePath : Paths.get(relativePath.toString());
+                    }
+
+                    private String pathOf(final Path path) {
+                        return start == rootPath ? path.toString()
+                                : rootPath.resolve(start.relativize(path).toString()).toString();
+                    }
+                });
+        return root[0];
+    }
+
+    /**
+     * Reads the folders and files of a tar archive below the given path within the archive, and visits the content
+     * of each file as it streams past. Archives do not have to contain entries for folders, so missing folders are
+     * added for the files in them.
+     */
+    private Entry readTar(final TarReader tar, final String innerPath, final Path rootPath, final Visitor visitor)
+            throws IOException {
+        // maps the paths of folders relative to the root to their entries, or to null if they are excluded
+        final Map<String, Entry> directories = new HashMap<>();
+        final Entry root = new Entry(fileName(rootPath), rootPath.toString(), null, true, false);
+        directories.put("", root);
+        final String prefix = innerPath.isEmpty() ? "" : innerPath + "/";
+        TarReader.Entry tarEntry;
+        while ((tarEntry = tar.next()) != null) {
+            final String name = normalize(tarEntry.getName());
+            if (name.isEmpty() || !name.startsWith(prefix)) {
+                continue;
+            }
+            final String relativePath = name.substring(prefix.length());
+            if (tarEntry.isDirectory()) {
+                directory(directories, relativePath, rootPath);
+            } else if (!tarEntry.isRegularFile()) {
+                Logger.warn("Skipping " + name + " in tar archive, as it is neither a file nor a folder");
+            } else {
+                final int slash = relativePath.lastIndexOf('/');
+                final Entry parent = directory(directories, slash < 0 ? "" : relativePath.substring(0, slash),
+                        rootPath);
+                final Path path = rootPath.resolve(relativePath);
+                if (parent != null && (filter == null || filter.acceptsFile(Paths.get(relativePath), path))) {
+                    final String fileName = relativePath.substring(slash + 1);
+                    final boolean parse = hasFileType(fileName)
+                            && (filter == null || filter.acceptsSize(path, tarEntry.getSize()));
+                    final Entry entry = new Entry(fileName, path.toString(), null, false, parse);
+                    if (parse) {
+                        entry.fileNode = visitor.visitContent(entry, tar.readContent());
+                    }
+                    parent.children.add(entry);
+                }
+            }
+        }
+        for (final Entry directory : directories.values()) {
+            if (directory != null) {
+                directory.children.sort(Comparator.comparing(entry -> entry.name));
+            }
+        }
+        return root;
+    }
+
+    private Entry directory(final Map<String, Entry> directories, final String relativePath, final Path rootPath) {
+        if (directories.containsKey(relativePath)) {
+            return directories.get(relativePath);
+        }
+        final int slash = relativePath.lastIndexOf('/');
+        final Entry parent = directory(directories, slash < 0 ? "" : relativePath.substring(0, slash), rootPath);
+        final Path path = rootPath.resolve(relativePath);
+        Entry entry = null;
+        if (parent != null && (filter == null || filter.acceptsFolder(Paths.get(relativePath), path))) {
+            entry = new Entry(relativePath.substring(slash + 1), path.toString(), null, true, false);
+            parent.children.add(entry);
+        }
+        directories.put(relativePath, entry);
+        return entry;
+    }
+
+    private static String normalize(final String name) {
+        String normalized = name;
+        while (normalized.startsWith("./") || normalized.startsWith("/")) {
+            normalized = normalized.substring(normalized.indexOf('/') + 1);
+        }
+        while (normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized.equals(".") ? "" : normalized;
+    }
+
+    private boolean hasFileType(final String name) {
+        // If there are no file types specified, we assume that all should be used
+        if (fileTypes.length == 0) {
+            return true;
+        }
+        for (final String fileType : fileTypes) {
+            if (name.endsWith(fileType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasSuffix(final String name, final String[] suffixes) {
+        for (final String suffix : suffixes) {
+            if (name.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String fileName(final Path path) {
+        final Path fileName = path.getFileName();
+        return fileName == null ? path.toString() : fileName.toString();
+    }
+}
@@ -0,0 +1,247 @@
+package org.variantsync.boosting.parsing;
+
+import org.tinylog.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A local git repository from which the trees of revisions are read without checking them out.
+ * <p>
+ * The repository is accessed through the local git executable. The files of a revision are listed with one call
+ * of {@code git ls-tree}, and the contents of files are read through a single long-running
+ * {@code git cat-file --batch} process, which is started on first use and shared by all threads. The object id of
+ * a file's content, its blob id, identifies the content, so that files with the same blob id are parsed only once.
+ * Close the repository after all variants have been parsed to stop the process.
+ */
+public class GitRepository implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * A file or folder in the tree of a revision.
+     */
+    static final class TreeEntry {
+        // the path relative to the root of the repository, separated by slashes
+        final String path;
+        final boolean directory;
+        // the blob id of a file, or the tree id of a folder
+        final String id;
+        // the size of a file in bytes, or -1 for a folder
+        final long size;
+
+        private TreeEntry(final String path, final boolean directory, final String id, final long size) {
+            this.path = path;
+            this.directory = directory;
+            this.id = id;
+            this.size = size;
+        }
+    }
+
+    private final Path directory;
+    private Process catFile;
+    private OutputStream catFileIn;
+    private InputStream catFileOut;
+
+    /**
+     * Constructs a GitRepository for the repository in the given folder.
+     *
+     * @param directory the work tree or the git folder of the repository
+     */
+    public GitRepository(final Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the folder of the repository.
+     *
+     * @return the work tree or the git folder of the repository
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Reads the content of a file in the tree of a revision.
+     *
+     * @param revision the revision, e.g., a branch, tag, or commit id
+     * @param path     the path of the file relative to the root of the repository
+     * @return the content of the file, or null if the revision does not contain the file
+     * @throws UncheckedIOException if git cannot be run
+     */
+    public byte[] readFile(final String revision, final String path) {
+        return readObject(revision + ":" + path, "blob");
+    }
+
+    /**
+     * Reads the content of a file by its blob id.
+     *
+     * @param id the blob id
+     * @return the content of the file
+     * @throws UncheckedIOException if git cannot be run or the blob does not exist
+     */
+    byte[] readBlob(final String id) {
+        final byte[] content = readObject(id, "blob");
+        if (content == null) {
+            throw new UncheckedIOException(new IOException("Missing blob " + id + " in " + directory));
+        }
+        return content;
+    }
+
+    /**
+     * Lists the files and folders below a folder in the tree of a revision.
+     *
+     * @param revision the revision, e.g., a branch, tag, or commit id
+     * @param folder   the folder relative to the root of the repository, or the empty string for the root
+     * @return the files and folders below the folder, in no particular order
+     * @throws UncheckedIOException if git cannot be run or the revision does not exist
+     */
+    List<TreeEntry> listTree(final String revision, final String folder) {
+        final List<String> command = new ArrayList<>(List.of("git", "-C", directory.toString(), "ls-tree", "-r", "-t",
+                "-l", "-z", "--full-tree", revision));
+        if (!folder.isEmpty()) {
+            command.add("--");
+            command.add(folder);
+        }
+        final byte[] output;
+        try {
+            final Process process = new ProcessBuilder(command).start();
+            process.getOutputStream().close();
+            output = process.getInputStream().readAllBytes();
+            final String error = new String(process.getErrorStream().readAllBytes(), StandardCharsets.UTF_8);
+            if (process.waitFor() != 0) {
+                throw new IOException("git ls-tree failed for " + revision + " in " + directory + ": " + error.trim());
+            }
+        } catch (final IOException e) {
+            Logger.error("Was not able to list the files of " + revision + " in " + directory, e);
+            throw new UncheckedIOException(e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new IOException("Interrupted while listing " + revision, e));
+        }
+        // records of the form "<mode> <type> <id> <size>\t<path>\0", where the size is padded and "-" for trees
+        final String prefix = folder.isEmpty() ? "" : folder + "/";
+        final List<TreeEntry> entries = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < output.length; i++) {
+            if (output[i] != 0) {
+                continue;
+            }
+            final String record = new String(output, start, i - start, StandardCharsets.UTF_8);
+            start = i + 1;
+            final int tab = record.indexOf('\t');
+            final String[] fields = record.substring(0, tab).trim().split(" +");
+            final String path = record.substring(tab + 1);
+            if (!path.startsWith(prefix)) {
+                // the folder itself and its parents
+                continue;
+            }
+            switch (fields[1]) {
+                case "tree":
+                    entries.add(new TreeEntry(path, true, fields[2], -1));
+                    break;
+                case "blob":
+                    if (fields[0].equals("120000")) {
+                        Logger.warn("Skipping symbolic link " + revision + ":" + path);
+                    } else {
+                        entries.add(new TreeEntry(path, false, fields[2], Long.parseLong(fields[3])));
+                    }
+                    break;
+                default:
+                    // submodules
+                    Logger.warn("Skipping " + fields[1] + " " + revision + ":" + path);
+            }
+        }
+        return entries;
+    }
+
+    private synchronized byte[] readObject(final String name, final String expectedType) {
+        try {
+            if (catFile == null) {
+                catFile = new ProcessBuilder("git", "-C", directory.toString(), "cat-file", "--batch")
+                        .redirectError(ProcessBuilder.Redirect.DISCARD)
+                        .start();
+                catFileIn = new BufferedOutputStream(catFile.getOutputStream(), BUFFER_SIZE);
+                catFileOut = new BufferedInputStream(catFile.getInputStream(), BUFFER_SIZE);
+            }
+            catFileIn.write((name + "\n").getBytes(StandardCharsets.UTF_8));
+            catFileIn.flush();
+            // "<id> <type> <size>" followed by the content, or "<name> missing"
+            final String line = readLine();
+            if (line.endsWith(" missing") || line.endsWith(" ambiguous")) {
+                return null;
+            }
+            final String[] header = line.split(" ");
+            final long size = Long.parseLong(header[2]);
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IOException("Object too large: " + name);
+            }
+            final byte[] content = catFileOut.readNBytes((int) size);
+            if (content.length < size || catFileOut.read() != '\n') {
+                throw new EOFException("Truncated output of git cat-file for " + name);
+            }
+            return header[1].equals(expectedType) ? content : null;
+        } catch (final IOException e) {
+            Logger.error("Was not able to read " + name + " from " + directory, e);
+            // the process is out of sync with its requests, so start a new one for the next request
+            stopCatFile();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String readLine() throws IOException {
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = catFileOut.read()) != '\n') {
+            if (b < 0) {
+                throw new EOFException("git cat-file terminated in " + directory);
+            }
+            line.write(b);
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    private void stopCatFile() {
+        if (catFile != null) {
+            catFile.destroy();
+            catFile = null;
+        }
+    }
+
+    /**
+     * Stops the git process through which contents are read. The repository can still be used afterward, which
+     * starts a new process.
+     */
+    @Override
+    public synchronized void close() {
+        if (catFile == null) {
+            return;
+        }
+        try {
+            catFileIn.close();
+            catFile.waitFor();
+        } catch (final IOException e) {
+            Logger.warn("Was not able to stop git cat-file in " + directory + ": " + e.getMessage());
+            catFile.destroy();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            catFile.destroy();
+        }
+        catFile = null;
+    }
+
+    @Override
+    public String toString() {
+        return directory.toString();
+    }
+}
@@ -0,0 +1,60 @@
+package org.variantsync.boosting.parsing;
+
+/**
+ * The sources of a variant in the tree of a revision of a local git repository.
+ * <p>
+ * The folders and files of the sources get paths in git's {@code <revision>:<path>} notation, e.g.,
+ * {@code v1.0:src/Main.java}, so that the paths of different revisions differ.
+ */
+public class GitRevision {
+    private final GitRepository repository;
+    private final String revision;
+    private final String folder;
+
+    /**
+     * Constructs a GitRevision for a folder in the tree of a revision.
+     *
+     * @param repository the repository
+     * @param revision   the revision, e.g., a branch, tag, or commit id
+     * @param folder     the folder of the sources relative to the root of the repository, separated by slashes, or
+     *                   the empty string for the whole tree
+     */
+    public GitRevision(final GitRepository repository, final String revision, final String folder) {
+        this.repository = repository;
+        this.revision = revision;
+        // without trailing slashes, which git does not accept in paths
+        this.folder = folder.replaceAll("/+$", "");
+    }
+
+    /**
+     * Returns the repository.
+     *
+     * @return the repository
+     */
+    public GitRepository getRepository() {
+        return repository;
+    }
+
+    /**
+     * Returns the revision.
+     *
+     * @return the revision, e.g., a branch, tag, or commit id
+     */
+    public String getRevision() {
+        return revision;
+    }
+
+    /**
+     * Returns the folder of the sources.
+     *
+     * @return the folder relative to the root of the repository, or the empty string for the whole tree
+     */
+    public String getFolder() {
+        return folder;
+    }
+
+    @Override
+    public String toString() {
+        return revision + ":" + folder;
+    }
+}
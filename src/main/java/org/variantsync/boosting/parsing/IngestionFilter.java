@@ -0,0 +1,227 @@
+package org.variantsync.boosting.parsing;
+
+import org.tinylog.Logger;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Decides which files of a variant are ingested into its AST.
+ * <p>
+ * Paths are matched against glob patterns (see {@link java.nio.file.FileSystem#getPathMatcher(String)}) relative to
+ * the sources root of the variant, e.g., {@code vendor} or {@code **}{@code /*.min.js}. Excluded folders and files
+ * are not added to the AST at all, and excluded folders are not walked. If include patterns are given, only files
+ * that match one of them are added. Files that are larger than the maximum file size or that look binary are
+ * added as file nodes without content. A file looks binary if its first {@value #BINARY_CHECK_LENGTH} bytes
+ * contain a NUL byte, which is the heuristic that git uses.
+ * <p>
+ * All skipped files are reported through {@link #getSkippedFiles()}. The filter is thread-safe once it has been
+ * configured, so it can be shared by all variants.
+ */
+public class IngestionFilter {
+    /**
+     * The number of bytes at the start of a file in which NUL bytes are looked for.
+     */
+    public static final int BINARY_CHECK_LENGTH = 8000;
+
+    /**
+     * The reasons for which a file is skipped.
+     */
+    public enum Reason {
+        /** The path matches an exclude pattern. */
+        EXCLUDED,
+        /** Include patterns are given, but the path matches none of them. */
+        NOT_INCLUDED,
+        /** The file is larger than the maximum file size. */
+        TOO_LARGE,
+        /** The file contains a NUL byte at its start. */
+        BINARY
+    }
+
+    /**
+     * A file or folder that has been skipped while ingesting a variant.
+     */
+    public static class SkippedFile {
+        private final Path path;
+        private final Reason reason;
+
+        SkippedFile(final Path path, final Reason reason) {
+            this.path = path;
+            this.reason = reason;
+        }
+
+        /**
+         * Returns the path of the skipped file or folder.
+         */
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * Returns the reason for which the file or folder has been skipped.
+         */
+        public Reason getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return path + " (" + reason + ")";
+        }
+    }
+
+    private final List<PathMatcher> includes = new ArrayList<>();
+    private final List<PathMatcher> excludes = new ArrayList<>();
+    private long maxFileSize;
+    private boolean skipBinaryFiles;
+    private final Queue<SkippedFile> skippedFiles = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Constructs an IngestionFilter that ingests every file.
+     */
+    public IngestionFilter() {
+    }
+
+    /**
+     * Adds a glob pattern for files that are ingested. Without include patterns, all files are ingested.
+     *
+     * @param glob the pattern, relative to the sources root of a variant
+     * @throws IllegalArgumentException if the pattern is invalid
+     */
+    public void addInclude(final String glob) {
+        includes.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+    }
+
+    /**
+     * Adds a glob pattern for folders and files that are not ingested.
+     *
+     * @param glob the pattern, relative to the sources root of a variant
+     * @throws IllegalArgumentException if the pattern is invalid
+     */
+    public void addExclude(final String glob) {
+        excludes.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+    }
+
+    /**
+     * Sets the maximum size of files whose content is ingested.
+     *
+     * @param maxFileSize the maximum size in bytes, or 0 for no limit
+     * @throws IllegalArgumentException if the size is negative
+     */
+    public void setMaxFileSize(final long maxFileSize) {
+        if (maxFileSize < 0) {
+            throw new IllegalArgumentException("The maximum file size must not be negative: " + maxFileSize);
+        }
+        this.maxFileSize = maxFileSize;
+    }
+
+    /**
+     * Sets whether the content of files that look binary is skipped.
+     *
+     * @param skipBinaryFiles true to skip binary files
+     */
+    public void setSkipBinaryFiles(final boolean skipBinaryFiles) {
+        this.skipBinaryFiles = skipBinaryFiles;
+    }
+
+    /**
+     * Returns whether the content of files that look binary is skipped.
+     */
+    public boolean isSkipBinaryFiles() {
+        return skipBinaryFiles;
+    }
+
+    /**
+     * Returns all folders and files that have been skipped so far, in no particular order.
+     *
+     * @return the skipped folders and files
+     */
+    public List<SkippedFile> getSkippedFiles() {
+        return new ArrayList<>(skippedFiles);
+    }
+
+    /**
+     * Forgets the folders and files that have been skipped so far.
+     */
+    public void clearSkippedFiles() {
+        skippedFiles.clear();
+    }
+
+    /**
+     * Checks whether a folder is walked.
+     *
+     * @param relativePath the path of the folder relative to the sources root
+     * @param path         the path of the folder, as reported
+     * @return true if the folder is walked, false if it is skipped
+     */
+    boolean acceptsFolder(final Path relativePath, final Path path) {
+        return !matches(excludes, relativePath) || skip(path, Reason.EXCLUDED);
+    }
+
+    /**
+     * Checks whether a file is added to the AST.
+     *
+     * @param relativePath the path of the file relative to the sources root
+     * @param path         the path of the file, as reported
+     * @return true if the file is added, false if it is skipped
+     */
+    boolean acceptsFile(final Path relativePath, final Path path) {
+        if (matches(excludes, relativePath)) {
+            return skip(path, Reason.EXCLUDED);
+        }
+        if (!includes.isEmpty() && !matches(includes, relativePath)) {
+            return skip(path, Reason.NOT_INCLUDED);
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the content of a file of the given size is ingested.
+     *
+     * @param path the path of the file, as reported
+     * @param size the size of the file in bytes
+     * @return true if the content is ingested, false if it is skipped
+     */
+    boolean acceptsSize(final Path path, final long size) {
+        return maxFileSize == 0 || size <= maxFileSize || skip(path, Reason.TOO_LARGE);
+    }
+
+    /**
+     * Checks whether the given content of a file is ingested.
+     *
+     * @param path    the path of the file, as reported
+     * @param content the content of the file
+     * @return true if the content is ingested, false if it is skipped
+     */
+    boolean acceptsContent(final Path path, final byte[] content) {
+        if (skipBinaryFiles) {
+            final int length = Math.min(content.length, BINARY_CHECK_LENGTH);
+            for (int i = 0; i < length; i++) {
+                if (content[i] == 0) {
+                    return skip(path, Reason.BINARY);
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(final List<PathMatcher> matchers, final Path relativePath) {
+        for (final PathMatcher matcher : matchers) {
+            if (matcher.matches(relativePath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean skip(final Path path, final Reason reason) {
+        Logger.debug("Skipping {} ({})", path, reason);
+        skippedFiles.add(new SkippedFile(path, reason));
+        return false;
+    }
+}
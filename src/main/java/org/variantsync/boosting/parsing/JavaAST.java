@@ -1,18 +1,22 @@
 package org.variantsync.boosting.parsing;
 
+import com.github.javaparser.JavaParserBuild;
 import com.github.javaparser.ast.CompilationUnit;
-import com.github.javaparser.utils.CodeGenerationUtils;
-import com.github.javaparser.utils.SourceRoot;
+
+import org.tinylog.Logger;
 
 import org.variantsync.boosting.datastructure.ASTNode;
-import org.variantsync.boosting.datastructure.CustomHashSet;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.Collection;
 
 /**
  * Represents an Abstract Syntax Tree (AST) for Java files.
  * This class extends the AbstractAST class and provides specific functionality
- * for Java files.
+ * for Java files. Files are parsed through {@link JavaSourceParser}.
  * 
  */
 public class JavaAST extends AbstractAST {
@@ -24,15 +28,37 @@ public class JavaAST extends AbstractAST {
         super(rootFile, ".java");
     }
 
-    public JavaAST(final ASTNode root, final CustomHashSet<ASTNode> astNodes) {
+    public JavaAST(final File rootFile, final ParseOptions parseOptions) {
+        super(rootFile, parseOptions, ".java");
+    }
+
+    public JavaAST(final GitRevision revision, final ParseOptions parseOptions) {
+        super(revision, parseOptions, ".java");
+    }
+
+    public JavaAST(final ASTNode root, final Collection<ASTNode> astNodes) {
         super(root, astNodes, ".java");
     }
 
     @Override
     protected void visitFileContent(final ASTNode fileNode, final File fileToVisit) {
-        final SourceRoot sourceRoot = new SourceRoot(CodeGenerationUtils.mavenModuleRoot(JavaAST.class)
-                .resolve(fileToVisit.getParentFile().getAbsolutePath()));
-        final CompilationUnit cu = sourceRoot.parse("", fileToVisit.getName());
-        cu.accept(new JavaVisitor(fileToVisit.toString()), fileNode);
+        try {
+            visitFileContent(fileNode, fileToVisit.toString(), Files.readAllBytes(fileToVisit.toPath()));
+        } catch (final IOException e) {
+            Logger.error("Was not able to read file " + fileToVisit, e);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    protected String getParserVersion() {
+        // version 2 no longer attributes comments to nodes
+        return (parseOptions.isSourceSliceText() ? "2-slice" : "2") + "-javaparser-" + JavaParserBuild.PROJECT_VERSION;
+    }
+
+    @Override
+    protected void visitFileContent(final ASTNode fileNode, final String filePath, final byte[] content) {
+        final CompilationUnit cu = JavaSourceParser.parse(filePath, content);
+        cu.accept(new JavaVisitor(filePath, parseOptions.isSourceSliceText()), fileNode);
     }
 }
@@ -0,0 +1,79 @@
+package org.variantsync.boosting.parsing;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParseStart;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.Providers;
+import com.github.javaparser.ast.CompilationUnit;
+
+import org.tinylog.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The front end through which {@link JavaAST} parses Java files.
+ * <p>
+ * Each thread keeps one configured {@link JavaParser}, so that no parser configuration or source root has to be
+ * set up per file. Comments are not attributed to nodes and no lexical information is kept, as the visitor only
+ * needs the structure and the positions of the nodes. Tokens are still stored, as JavaParser derives the ranges of
+ * the nodes from them. The time spent parsing is recorded per file (logged on debug level) and in total.
+ */
+public final class JavaSourceParser {
+    private static final ThreadLocal<JavaParser> PARSER = ThreadLocal.withInitial(() -> new JavaParser(
+            new ParserConfiguration()
+                    .setAttributeComments(false)
+                    .setLexicalPreservationEnabled(false)));
+
+    private static final AtomicLong parsedFiles = new AtomicLong();
+    private static final AtomicLong parseTimeNanos = new AtomicLong();
+
+    private JavaSourceParser() {
+    }
+
+    /**
+     * Parses the given content of a Java file.
+     *
+     * @param filePath the path of the file, only used for logging
+     * @param content  the content of the file, encoded as UTF-8
+     * @return the compilation unit of the file
+     * @throws ParseProblemException if the content is not valid Java
+     */
+    public static CompilationUnit parse(final String filePath, final byte[] content) {
+        final long start = System.nanoTime();
+        final ParseResult<CompilationUnit> result = PARSER.get().parse(ParseStart.COMPILATION_UNIT,
+                Providers.provider(new ByteArrayInputStream(content), StandardCharsets.UTF_8));
+        final long duration = System.nanoTime() - start;
+        parsedFiles.incrementAndGet();
+        parseTimeNanos.addAndGet(duration);
+        Logger.debug("Parsed {} ({} bytes) in {} µs", filePath, content.length, duration / 1000);
+        return result.getResult()
+                .filter(unit -> result.isSuccessful())
+                .orElseThrow(() -> new ParseProblemException(result.getProblems()));
+    }
+
+    /**
+     * Returns the number of files parsed by all threads.
+     */
+    public static long getParsedFiles() {
+        return parsedFiles.get();
+    }
+
+    /**
+     * Returns the total time in nanoseconds that all threads have spent parsing files.
+     */
+    public static long getParseTimeNanos() {
+        return parseTimeNanos.get();
+    }
+
+    /**
+     * Resets the number of parsed files and the total parse time to zero.
+     */
+    public static void resetStatistics() {
+        parsedFiles.set(0);
+        parseTimeNanos.set(0);
+    }
+}
@@ -1,5 +1,6 @@
 package org.variantsync.boosting.parsing;
 
+import com.github.javaparser.JavaToken;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.NodeList;
@@ -14,12 +15,15 @@ import org.variantsync.boosting.position.Position;
 
 import org.tinylog.Logger;
 
+import java.util.function.Supplier;
+
 /**
  * This class represents a Java visitor that is used to visit ASTNodes in a Java
  * file.
  */
 public class JavaVisitor extends VoidVisitorWithDefaults<ASTNode> {
     private final String visitedFile;
+    private final boolean sourceSliceText;
 
     /**
      * Constructs a new JavaVisitor object with the specified visited file.
@@ -27,7 +31,96 @@ public class JavaVisitor extends VoidVisitorWithDefaults<ASTNode> {
      * @param visitedFile The file being visited by the JavaVisitor.
      */
     public JavaVisitor(final String visitedFile) {
+        this(visitedFile, false);
+    }
+
+    /**
+     * Constructs a new JavaVisitor object with the specified visited file.
+     *
+     * @param visitedFile     The file being visited by the JavaVisitor.
+     * @param sourceSliceText Whether the code of the created nodes is sliced from the
+     *                        tokens of the source instead of being pretty-printed.
+     */
+    public JavaVisitor(final String visitedFile, final boolean sourceSliceText) {
         this.visitedFile = visitedFile;
+        this.sourceSliceText = sourceSliceText;
+    }
+
+    /**
+     * Returns the code of the given node. It is either pretty-printed or sliced from
+     * the tokens of the source: comments are dropped and each run of whitespace
+     * becomes a single space.
+     *
+     * @param n The node whose code is returned.
+     * @return The code of the node.
+     */
+    public String text(final Node n) {
+        if (!sourceSliceText || !n.getTokenRange().isPresent()) {
+            return n.toString();
+        }
+        final StringBuilder text = new StringBuilder();
+        boolean whitespace = false;
+        for (final JavaToken token : n.getTokenRange().get()) {
+            final JavaToken.Category category = token.getCategory();
+            if (category.isWhitespace()) {
+                whitespace = true;
+            } else if (!category.isComment()) {
+                if (whitespace && text.length() > 0) {
+                    text.append(' ');
+                }
+                whitespace = false;
+                text.append(token.getText());
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Returns the code of the given nodes in the format of {@link NodeList#toString()}.
+     *
+     * @param nodes The nodes whose code is returned.
+     * @return The code of the nodes, separated by commas and enclosed in brackets.
+     */
+    public String text(final NodeList<? extends Node> nodes) {
+        if (!sourceSliceText) {
+            return nodes.toString();
+        }
+        final StringBuilder text = new StringBuilder("[");
+        for (final Node node : nodes) {
+            if (text.length() > 1) {
+                text.append(", ");
+            }
+            text.append(text(node));
+        }
+        return text.append(']').toString();
+    }
+
+    /**
+     * Returns the declaration of the given constructor in the format of
+     * {@link ConstructorDeclaration#getDeclarationAsString()}: its access modifier,
+     * name, parameters, and thrown exceptions. The parameters and exceptions are
+     * either pretty-printed or sliced from the tokens of the source.
+     *
+     * @param n The constructor whose declaration is returned.
+     * @return The declaration of the constructor.
+     */
+    public String declaration(final ConstructorDeclaration n) {
+        if (!sourceSliceText) {
+            return n.getDeclarationAsString();
+        }
+        final StringBuilder text = new StringBuilder(n.getAccessSpecifier().asString()).append(' ')
+                .append(n.getNameAsString()).append('(');
+        for (int i = 0; i < n.getParameters().size(); i++) {
+            if (i > 0) {
+                text.append(", ");
+            }
+            text.append(text(n.getParameter(i)));
+        }
+        text.append(')');
+        for (int i = 0; i < n.getThrownExceptions().size(); i++) {
+            text.append(i == 0 ? " throws " : ", ").append(text(n.getThrownException(i)));
+        }
+        return text.toString();
     }
 
     /**
@@ -43,7 +136,8 @@ public class JavaVisitor extends VoidVisitorWithDefaults<ASTNode> {
 
     @Override
     public void visit(final CompilationUnit n, final ASTNode parent) {
-        Logger.debug("Visiting CompilationUnit " + n.toString());
+        // the compilation unit is only printed if debug logging is enabled
+        Logger.debug("Visiting CompilationUnit {}", (Supplier<String>) n::toString);
         visit(n.getTypes(), parent);
         for (final ASTNode child : parent.getChildren()) {
             if (n.getType(0).getNameAsString().equals(child.getCode())) {
@@ -64,7 +158,7 @@ public class JavaVisitor extends VoidVisitorWithDefaults<ASTNode> {
     @Override
     public void visit(final IfStmt n, final ASTNode parent) {
         Logger.debug("Visiting if statement");
-        final ASTNode child = new ASTNode(parent, n.getCondition().toString(),
+        final ASTNode child = new ASTNode(parent, text(n.getCondition()),
                 n.getRange().isPresent() ? parsePosition(n.getRange().get().begin) : null,
                 ASTNode.NODE_TYPE.IF_STATEMENT, null);
         parent.addChild(child);
@@ -124,12 +218,13 @@ public class JavaVisitor extends VoidVisitorWithDefaults<ASTNode> {
         final ASTNode child;
         if (n.getCompare().isPresent()) {
             child = new ASTNode(parent,
-                    "for(" + n.getInitialization() + "; " + n.getCompare().get() + "; " + n.getUpdate() + ")",
+                    "for(" + text(n.getInitialization()) + "; " + text(n.getCompare().get()) + "; "
+                            + text(n.getUpdate()) + ")",
                     n.getRange().isPresent() ? parsePosition(n.getRange().get().begin) : null,
                     ASTNode.NODE_TYPE.FOR_STATEMENT, null);
             n.getCompare().get().accept(this, child);
         } else
-            child = new ASTNode(parent, "for(" + n.getInitialization() + "; ; " + n.getUpdate() + ")",
+            child = new ASTNode(parent, "for(" + text(n.getInitialization()) + "; ; " + text(n.getUpdate()) + ")",
                     n.getRange().isPresent() ? parsePosition(n.getRange().get().begin) : null,
                     ASTNode.NODE_TYPE.FOR_STATEMENT, null);
         parent.addChild(child);
@@ -139,7 +234,7 @@ public class JavaVisitor extends VoidVisitorWithDefaults<ASTNode> {
     @Override
     public void visit(final ForEachStmt n, final ASTNode parent) {
         Logger.debug("Visiting for-each statement");
-        final ASTNode child = new ASTNode(parent, "for(" + n.getVariable() + ": " + n.getIterable() + ")",
+        final ASTNode child = new ASTNode(parent, "for(" + text(n.getVariable()) + ": " + text(n.getIterable()) + ")",
                 n.getRange().isPresent() ? parsePosition(n.getRange().get().begin) : null,
                 ASTNode.NODE_TYPE.FOREACH_STATEMENT, null);
         parent.addChild(child);
@@ -149,7 +244,7 @@ public class JavaVisitor extends VoidVisitorWithDefaults<ASTNode> {
     @Override
     public void visit(final ConstructorDeclaration n, final ASTNode parent) {
         Logger.debug("Visiting constructor");
-        final ASTNode child = new ASTNode(parent, n.getDeclarationAsString(),
+        final ASTNode child = new ASTNode(parent, declaration(n),
                 n.getRange().isPresent() ? parsePosition(n.getRange().get().begin) : null,
                 ASTNode.NODE_TYPE.CONSTRUCTOR_DECLARATION, null);
         parent.addChild(child);
@@ -189,7 +284,7 @@ public class JavaVisitor extends VoidVisitorWithDefaults<ASTNode> {
     @Override
     public void visit(final SwitchEntry n, final ASTNode parent) {
         Logger.debug("Visiting switch entry");
-        final ASTNode child = new ASTNode(parent, "case " + n.getLabels().toString(),
+        final ASTNode child = new ASTNode(parent, "case " + text(n.getLabels()),
                 n.getRange().isPresent() ? parsePosition(n.getRange().get().begin) : null,
                 ASTNode.NODE_TYPE.SWITCH_ENTRY, null);
         parent.addChild(child);
@@ -199,7 +294,7 @@ public class JavaVisitor extends VoidVisitorWithDefaults<ASTNode> {
     @Override
     public void visit(final SwitchStmt n, final ASTNode parent) {
         Logger.debug("Visiting switch statement");
-        final ASTNode child = new ASTNode(parent, "switch(" + n.getSelector().toString() + ")",
+        final ASTNode child = new ASTNode(parent, "switch(" + text(n.getSelector()) + ")",
                 n.getRange().isPresent() ? parsePosition(n.getRange().get().begin) : null,
                 ASTNode.NODE_TYPE.SWITCH_STMT, null);
         parent.addChild(child);
@@ -219,7 +314,7 @@ public class JavaVisitor extends VoidVisitorWithDefaults<ASTNode> {
     @Override
     public void defaultAction(final Node n, final ASTNode parent) {
         Logger.debug("Visiting default entry");
-        final ASTNode child = new ASTNode(parent, n.toString(),
+        final ASTNode child = new ASTNode(parent, text(n),
                 n.getRange().isPresent() ? parsePosition(n.getRange().get().begin) : null, ASTNode.NODE_TYPE.DEFAULT,
                 null);
         parent.addChild(child);
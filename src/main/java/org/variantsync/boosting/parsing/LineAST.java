@@ -3,15 +3,19 @@ package org.variantsync.boosting.parsing;
 import org.tinylog.Logger;
 
 import org.variantsync.boosting.datastructure.ASTNode;
-import org.variantsync.boosting.datastructure.CustomHashSet;
 import org.variantsync.boosting.position.LinePosition;
 import org.variantsync.boosting.position.Position;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.util.List;
+import java.util.Collection;
 
 /**
  * Represents a node in the Abstract Syntax Tree (AST) that represents a line of
@@ -43,15 +47,39 @@ public class LineAST extends AbstractAST {
         super(rootFile, fileTypes);
     }
 
+    /**
+     * Constructs a LineAST object with the specified root file and file types, parsing the files with the given
+     * options.
+     *
+     * @param rootFile     the root file to start parsing from
+     * @param parseOptions the options with which the files are parsed
+     * @param fileTypes    the file types to be used for parsing
+     */
+    public LineAST(final File rootFile, final ParseOptions parseOptions, final String... fileTypes) {
+        super(rootFile, parseOptions, fileTypes);
+    }
+
+    /**
+     * Constructs a LineAST object from the sources in a revision of a git repository with the specified file
+     * types, parsing the files with the given options.
+     *
+     * @param revision     the revision and folder to start parsing from
+     * @param parseOptions the options with which the files are parsed
+     * @param fileTypes    the file types to be used for parsing
+     */
+    public LineAST(final GitRevision revision, final ParseOptions parseOptions, final String... fileTypes) {
+        super(revision, parseOptions, fileTypes);
+    }
+
     /**
      * Constructs a LineAST object with the specified root node, AST nodes, and file
      * types.
      *
      * @param root      the root node of the AST
-     * @param astNodes  the set of AST nodes
+     * @param astNodes  the AST nodes, except the root
      * @param fileTypes the file types to be used for parsing
      */
-    public LineAST(final ASTNode root, final CustomHashSet<ASTNode> astNodes, final String... fileTypes) {
+    public LineAST(final ASTNode root, final Collection<ASTNode> astNodes, final String... fileTypes) {
         super(root, astNodes, fileTypes);
     }
 
@@ -66,21 +94,64 @@ public class LineAST extends AbstractAST {
     @Override
     protected void visitFileContent(final ASTNode fileNode, final File fileToVisit) {
         try {
-            // Read all lines from the file
-            final List<String> lines = Files.readAllLines(fileToVisit.toPath());
-            int lineIndex = LINE_BASE_INDEX;
+            visitFileContent(fileNode, fileToVisit.toString(), Files.readAllBytes(fileToVisit.toPath()));
+        } catch (final IOException e) {
+            // Handle any IOException that occurs
+            e.printStackTrace();
+            Logger.error("Was not able to read file " + fileToVisit, e);
+            throw new UncheckedIOException(e);
+        }
+    }
 
-            // Create a node for each line in the file
-            for (final String line : lines) {
-                final Position position = new LinePosition(fileToVisit.toString(), lineIndex, 0);
+    /**
+     * Creates an AST node for each line of the given content, which is decoded as UTF-8. Lines are split directly
+     * on the bytes of the content, like {@link BufferedReader#readLine()} splits them, and only lines that contain
+     * non-ASCII bytes go through a decoder.
+     *
+     * @param fileNode The ASTNode representing the file being visited
+     * @param filePath The path of the file, as used in the positions of the lines
+     * @param content  The content of the file
+     * @throws UncheckedIOException If the content is not valid UTF-8
+     */
+    @Override
+    protected void visitFileContent(final ASTNode fileNode, final String filePath, final byte[] content) {
+        // Lines are decoded strictly, like Files.readAllLines, which rejects malformed input. Line breaks never
+        // occur inside multibyte characters, so each line can be decoded on its own.
+        final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+        int lineIndex = LINE_BASE_INDEX;
+        int lineStart = 0;
+        boolean ascii = true;
+        for (int i = 0; i <= content.length; i++) {
+            final byte b = i < content.length ? content[i] : (byte) '\n';
+            if (b != '\n' && b != '\r') {
+                ascii &= b >= 0;
+                continue;
+            }
+            // A line break after the last line does not start another line
+            if (i < content.length || lineStart < content.length) {
+                final String line = decodeLine(decoder, content, lineStart, i - lineStart, ascii, filePath);
+                final Position position = new LinePosition(filePath, lineIndex, 0);
                 final ASTNode lineNode = new ASTNode(fileNode, line, position, ASTNode.NODE_TYPE.LINE, null);
                 fileNode.addChild(lineNode);
                 lineIndex++;
             }
-        } catch (final IOException e) {
-            // Handle any IOException that occurs
-            e.printStackTrace();
-            Logger.error("Was not able to read file " + fileToVisit, e);
+            if (b == '\r' && i + 1 < content.length && content[i + 1] == '\n') {
+                i++;
+            }
+            lineStart = i + 1;
+            ascii = true;
+        }
+    }
+
+    private static String decodeLine(final CharsetDecoder decoder, final byte[] content, final int offset,
+                                     final int length, final boolean ascii, final String filePath) {
+        if (ascii) {
+            return new String(content, offset, length, StandardCharsets.ISO_8859_1);
+        }
+        try {
+            return decoder.decode(ByteBuffer.wrap(content, offset, length)).toString();
+        } catch (final CharacterCodingException e) {
+            Logger.error("Was not able to read file " + filePath, e);
             throw new UncheckedIOException(e);
         }
     }
@@ -0,0 +1,191 @@
+package org.variantsync.boosting.parsing;
+
+import org.variantsync.boosting.datastructure.ASTNode;
+import org.variantsync.boosting.datastructure.ChildSet;
+import org.variantsync.boosting.position.FilePosition;
+import org.variantsync.boosting.position.LinePosition;
+import org.variantsync.boosting.position.Position;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A cache of parsed file contents, keyed by the hash of the content.
+ * <p>
+ * Variants that have been created by clone-and-own share most of their files byte for byte. The cache parses each
+ * distinct content once per kind of AST into a detached template subtree. Every file with that content then gets
+ * a copy of the template in which all line positions refer to the file itself. The cache is thread-safe; if
+ * several threads request the same content at the same time, it is parsed only once and the other threads wait
+ * for the result.
+ * <p>
+ * Optionally, parsed contents are also kept on disk across runs, see {@link #setDiskCache(Path, long)}. Contents
+ * that are not in memory are then looked up on disk before they are parsed.
+ */
+public class ParseCache {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final Map<String, CompletableFuture<ASTNode>> templates = new ConcurrentHashMap<>();
+    private final AtomicLong parsedFiles = new AtomicLong();
+    private final AtomicLong reusedFiles = new AtomicLong();
+    private final AtomicLong loadedFiles = new AtomicLong();
+    private volatile ParseCacheStore store;
+
+    /**
+     * Keeps parsed contents in the given directory across runs. The least recently used contents are deleted
+     * when the files in the directory grow larger than the given size.
+     *
+     * @param directory the directory of the disk cache
+     * @param maxSize   the maximum size of the disk cache in bytes, or 0 to disable the disk cache
+     * @throws UncheckedIOException if the directory cannot be created or read
+     */
+    public void setDiskCache(final Path directory, final long maxSize) {
+        this.store = maxSize > 0 ? new ParseCacheStore(directory, maxSize) : null;
+    }
+
+    /**
+     * Adds the parsed content of a file below the given file node. If a file with the same content has already been
+     * parsed into an AST of the same kind, its subtree is copied instead of parsing the content again.
+     *
+     * @param ast      the AST to which the file belongs; determines how the content is parsed
+     * @param fileNode the node of the file, to which the parsed content is added
+     * @param filePath the path of the file, as used in the positions of the parsed nodes
+     * @param content  the content of the file
+     * @param parser   parses the content below a given file node
+     */
+    public void visitFileContent(final AbstractAST ast, final ASTNode fileNode, final String filePath,
+                                 final byte[] content, final Consumer<ASTNode> parser) {
+        visitFileContent(ast, fileNode, filePath, hash(content), parser);
+    }
+
+    /**
+     * Adds the parsed content of a file below the given file node, where the content is identified by the given
+     * id instead of its hash. This avoids reading and hashing contents whose id is already known, such as the blob
+     * ids of files in git repositories.
+     *
+     * @param ast       the AST to which the file belongs; determines how the content is parsed
+     * @param fileNode  the node of the file, to which the parsed content is added
+     * @param filePath  the path of the file, as used in the positions of the parsed nodes
+     * @param contentId the id of the content, which must differ from the ids of all other contents and must only
+     *                  consist of letters and digits
+     * @param parser    parses the content below a given file node; only called if the content is not cached
+     */
+    public void visitFileContent(final AbstractAST ast, final ASTNode fileNode, final String filePath,
+                                 final String contentId, final Consumer<ASTNode> parser) {
+        final String key = ast.getClass().getSimpleName() + "-"
+                + ast.getParserVersion().replaceAll("[^A-Za-z0-9.]", "_") + "-" + contentId;
+        final CompletableFuture<ASTNode> newTemplate = new CompletableFuture<>();
+        final CompletableFuture<ASTNode> template = templates.putIfAbsent(key, newTemplate);
+        if (template == null) {
+            final ParseCacheStore store = this.store;
+            ASTNode templateNode = store == null ? null : store.load(key, fileNode.getCode(), filePath);
+            if (templateNode != null) {
+                loadedFiles.incrementAndGet();
+            } else {
+                templateNode = new ASTNode(null, fileNode.getCode(), new FilePosition(filePath),
+                        ASTNode.NODE_TYPE.FILE, null);
+                try {
+                    parser.accept(templateNode);
+                } catch (final RuntimeException | Error e) {
+                    // let the next request for this content try again
+                    templates.remove(key, newTemplate);
+                    newTemplate.completeExceptionally(e);
+                    throw e;
+                }
+                parsedFiles.incrementAndGet();
+                if (store != null) {
+                    store.store(key, templateNode);
+                }
+            }
+            newTemplate.complete(templateNode);
+            copyChildren(templateNode, fileNode, filePath);
+        } else {
+            reusedFiles.incrementAndGet();
+            copyChildren(template.join(), fileNode, filePath);
+        }
+    }
+
+    /**
+     * Returns the number of file contents that have been parsed.
+     */
+    public long getParsedFiles() {
+        return parsedFiles.get();
+    }
+
+    /**
+     * Returns the number of file contents that have been loaded from the disk cache instead of parsing them.
+     */
+    public long getLoadedFiles() {
+        return loadedFiles.get();
+    }
+
+    /**
+     * Returns the number of files whose content has been copied from an earlier file with the same content.
+     */
+    public long getReusedFiles() {
+        return reusedFiles.get();
+    }
+
+    /**
+     * Removes all parsed contents from the memory of this cache, e.g., after all variants have been parsed. The
+     * disk cache is kept.
+     */
+    public void clear() {
+        templates.clear();
+    }
+
+    private static void copyChildren(final ASTNode template, final ASTNode fileNode, final String filePath) {
+        // copy the subtree with an explicit stack, as trees can be deep
+        final Deque<ASTNode[]> stack = new ArrayDeque<>();
+        // children are pushed in reverse, so that they are copied in their order
+        final ChildSet templateChildren = template.getChildren();
+        for (int i = templateChildren.size() - 1; i >= 0; i--) {
+            stack.push(new ASTNode[] { templateChildren.get(i), fileNode });
+        }
+        while (!stack.isEmpty()) {
+            final ASTNode[] entry = stack.pop();
+            final ASTNode original = entry[0];
+            final ASTNode parent = entry[1];
+            final ASTNode copy = new ASTNode(parent, original.getCode(),
+                    rebind(original.getStartPosition(), filePath), original.getType(), original.getMapping());
+            copy.setSequenceNumber(original.getSequenceNumber());
+            parent.addChild(copy);
+            final ChildSet children = original.getChildren();
+            for (int i = children.size() - 1; i >= 0; i--) {
+                stack.push(new ASTNode[] { children.get(i), copy });
+            }
+        }
+    }
+
+    private static Position rebind(final Position position, final String filePath) {
+        if (position instanceof LinePosition) {
+            return new LinePosition(filePath, position.lineNumber(), position.columnNumber());
+        }
+        return position;
+    }
+
+    private static String hash(final byte[] content) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+        final byte[] hash = digest.digest(content);
+        final char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xF];
+        }
+        return new String(hex);
+    }
+}
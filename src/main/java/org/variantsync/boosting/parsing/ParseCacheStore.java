@@ -0,0 +1,302 @@
+package org.variantsync.boosting.parsing;
+
+import org.tinylog.Logger;
+
+import org.variantsync.boosting.datastructure.ASTNode;
+import org.variantsync.boosting.datastructure.ChildSet;
+import org.variantsync.boosting.position.FilePosition;
+import org.variantsync.boosting.position.LinePosition;
+import org.variantsync.boosting.position.Position;
+import org.variantsync.boosting.position.RootPosition;
+import org.variantsync.boosting.position.UnspecifiedPosition;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The on-disk tier of a {@link ParseCache}, which keeps parsed file contents across runs.
+ * <p>
+ * Each parsed content is stored in its own file, named after its cache key. A file holds the nodes of the
+ * template subtree in pre-order as parent index, type, code, sequence number, and position. Paths of line positions
+ * are not stored, as they are replaced by the path of the file that reuses the content. The total size of the
+ * files is bounded; when it is exceeded, the least recently used files are deleted. The last use of a file is
+ * tracked through its modification time.
+ */
+class ParseCacheStore {
+    private static final int MAGIC = 0x54425043;
+    private static final int VERSION = 2;
+    private static final String SUFFIX = ".tree";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final byte POSITION_ROOT = 0;
+    private static final byte POSITION_UNSPECIFIED = 1;
+    private static final byte POSITION_FILE = 2;
+    private static final byte POSITION_LINE = 3;
+
+    private final Path directory;
+    private final long maxSize;
+    private final AtomicLong size = new AtomicLong();
+
+    /**
+     * Opens the store in the given directory, creating the directory if necessary.
+     *
+     * @param directory the directory of the store
+     * @param maxSize   the maximum total size of the stored files in bytes
+     * @throws UncheckedIOException if the directory cannot be created or listed
+     */
+    ParseCacheStore(final Path directory, final long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        try {
+            Files.createDirectories(directory);
+            long totalSize = 0;
+            for (final Path file : listFiles()) {
+                totalSize += Files.size(file);
+            }
+            size.set(totalSize);
+        } catch (final IOException e) {
+            Logger.error("Was not able to open parse cache in " + directory, e);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Loads the template subtree stored under the given key.
+     *
+     * @param key      the cache key
+     * @param fileName the code of the file node of the template
+     * @param filePath the path of the file node of the template and its line positions
+     * @return the file node of the template, or null if the key is not stored or its file cannot be read
+     */
+    ASTNode load(final String key, final String fileName, final String filePath) {
+        final Path file = directory.resolve(key + SUFFIX);
+        try (final DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            final ASTNode template = read(in, fileName, filePath);
+            // mark the file as recently used
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return template;
+        } catch (final NoSuchFileException e) {
+            return null;
+        } catch (final IOException | RuntimeException e) {
+            Logger.warn("Ignoring unreadable parse cache entry " + file + ": " + e.getMessage());
+            delete(file);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the given template subtree under the given key and evicts the least recently used entries if the
+     * store has become too large. Failures are logged, as the store is only a cache.
+     *
+     * @param key      the cache key
+     * @param template the file node of the template
+     */
+    void store(final String key, final ASTNode template) {
+        final Path file = directory.resolve(key + SUFFIX);
+        final Path tmpFile = directory.resolve(key + SUFFIX + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            try (final DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmpFile), BUFFER_SIZE))) {
+                write(out, template);
+            }
+            final long fileSize = Files.size(tmpFile);
+            try {
+                Files.move(tmpFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (size.addAndGet(fileSize) > maxSize) {
+                evict();
+            }
+        } catch (final IOException e) {
+            Logger.warn("Was not able to store parse cache entry " + file + ": " + e.getMessage());
+            delete(tmpFile);
+        }
+    }
+
+    private synchronized void evict() {
+        if (size.get() <= maxSize) {
+            return;
+        }
+        final List<Path> files;
+        final Map<Path, FileTime> lastUses = new HashMap<>();
+        try {
+            files = listFiles();
+            for (final Path file : files) {
+                lastUses.put(file, Files.getLastModifiedTime(file));
+            }
+        } catch (final IOException e) {
+            Logger.warn("Was not able to list parse cache entries in " + directory + ": " + e.getMessage());
+            return;
+        }
+        files.sort(Comparator.comparing(lastUses::get));
+        long totalSize = 0;
+        final long[] sizes = new long[files.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = fileSize(files.get(i));
+            totalSize += sizes[i];
+        }
+        // evict down to a fraction of the bound, so that not every following store triggers an eviction
+        final long targetSize = maxSize - maxSize / 10;
+        for (int i = 0; i < sizes.length && totalSize > targetSize; i++) {
+            if (delete(files.get(i))) {
+                totalSize -= sizes[i];
+            }
+        }
+        Logger.debug("Evicted parse cache entries, {} bytes remain", totalSize);
+        size.set(totalSize);
+    }
+
+    private List<Path> listFiles() throws IOException {
+        final List<Path> files = new ArrayList<>();
+        try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        return files;
+    }
+
+    private static long fileSize(final Path file) {
+        try {
+            return Files.size(file);
+        } catch (final IOException e) {
+            return 0;
+        }
+    }
+
+    private static boolean delete(final Path file) {
+        try {
+            return Files.deleteIfExists(file);
+        } catch (final IOException e) {
+            Logger.warn("Was not able to delete parse cache entry " + file + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void write(final DataOutputStream out, final ASTNode template) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        // pre-order traversal with an explicit stack, as trees can be deep
+        final List<ASTNode> nodes = new ArrayList<>();
+        final Map<ASTNode, Integer> nodeIds = new IdentityHashMap<>();
+        final Deque<ASTNode> stack = new ArrayDeque<>(template.getChildren());
+        while (!stack.isEmpty()) {
+            final ASTNode node = stack.pop();
+            nodeIds.put(node, nodes.size());
+            nodes.add(node);
+            // in reverse, so that siblings are written in their order
+            final ChildSet children = node.getChildren();
+            for (int i = children.size() - 1; i >= 0; i--) {
+                stack.push(children.get(i));
+            }
+        }
+        out.writeInt(nodes.size());
+        for (final ASTNode node : nodes) {
+            final Integer parentId = nodeIds.get(node.getParent());
+            // -1 refers to the file node
+            out.writeInt(parentId == null ? -1 : parentId);
+            out.writeByte(node.getType().ordinal());
+            writeString(out, node.getCode());
+            out.writeInt(node.getSequenceNumber());
+            writePosition(out, node.getStartPosition());
+        }
+    }
+
+    private static ASTNode read(final DataInputStream in, final String fileName, final String filePath)
+            throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Unsupported parse cache entry");
+        }
+        final ASTNode template = new ASTNode(null, fileName, new FilePosition(filePath), ASTNode.NODE_TYPE.FILE, null);
+        final ASTNode.NODE_TYPE[] typeValues = ASTNode.NODE_TYPE.values();
+        final ASTNode[] nodes = new ASTNode[in.readInt()];
+        for (int i = 0; i < nodes.length; i++) {
+            final int parentId = in.readInt();
+            final ASTNode parent = parentId == -1 ? template : nodes[parentId];
+            final ASTNode.NODE_TYPE type = typeValues[in.readByte()];
+            final String code = readString(in);
+            final int sequenceNumber = in.readInt();
+            final ASTNode node = new ASTNode(parent, code, readPosition(in, filePath), type, null);
+            node.setSequenceNumber(sequenceNumber);
+            parent.addChild(node);
+            nodes[i] = node;
+        }
+        return template;
+    }
+
+    private static void writeString(final DataOutputStream out, final String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writePosition(final DataOutputStream out, final Position position) throws IOException {
+        if (position instanceof RootPosition) {
+            out.writeByte(POSITION_ROOT);
+        } else if (position instanceof UnspecifiedPosition) {
+            out.writeByte(POSITION_UNSPECIFIED);
+        } else if (position instanceof FilePosition) {
+            out.writeByte(POSITION_FILE);
+            writeString(out, position.serializedPosition()[1]);
+        } else if (position instanceof LinePosition) {
+            out.writeByte(POSITION_LINE);
+            out.writeInt(position.lineNumber());
+            out.writeInt(position.columnNumber());
+        } else {
+            throw new UnsupportedOperationException("Unsupported position type " + position.getClass().getName());
+        }
+    }
+
+    private static Position readPosition(final DataInputStream in, final String filePath) throws IOException {
+        final byte kind = in.readByte();
+        switch (kind) {
+            case POSITION_ROOT:
+                return RootPosition.INSTANCE;
+            case POSITION_UNSPECIFIED:
+                return UnspecifiedPosition.INSTANCE;
+            case POSITION_FILE:
+                return new FilePosition(readString(in));
+            case POSITION_LINE: {
+                final int line = in.readInt();
+                return new LinePosition(filePath, line, in.readInt());
+            }
+            default:
+                throw new IOException("Unknown position type " + kind);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.variantsync.boosting.parsing;
+
+/**
+ * Options that control how the files of a variant are parsed into an AST.
+ * <p>
+ * The options are read while an AST is created from its root file. One instance is usually shared by all variants
+ * of a run, so that they share the same {@link ParseCache}.
+ */
+public class ParseOptions {
+    private ParseCache parseCache;
+    private boolean sourceSliceText;
+    private boolean parallelFiles;
+    private IngestionFilter ingestionFilter;
+
+    /**
+     * Constructs ParseOptions that parse every file and use JavaParser's pretty printer for the code of Java nodes.
+     */
+    public ParseOptions() {
+    }
+
+    /**
+     * Constructs ParseOptions with the same settings as the given options.
+     *
+     * @param other the options to copy
+     */
+    public ParseOptions(final ParseOptions other) {
+        this.parseCache = other.parseCache;
+        this.sourceSliceText = other.sourceSliceText;
+        this.parallelFiles = other.parallelFiles;
+        this.ingestionFilter = other.ingestionFilter;
+    }
+
+    /**
+     * Returns the cache of parsed file contents.
+     *
+     * @return the cache, or null if every file is parsed
+     */
+    public ParseCache getParseCache() {
+        return parseCache;
+    }
+
+    /**
+     * Sets the cache through which files with the same content are parsed only once.
+     *
+     * @param parseCache the cache, or null to parse every file
+     */
+    public void setParseCache(final ParseCache parseCache) {
+        this.parseCache = parseCache;
+    }
+
+    /**
+     * Returns whether the code of Java nodes is sliced from the source instead of being pretty-printed.
+     *
+     * @return true if the code is sliced from the source
+     */
+    public boolean isSourceSliceText() {
+        return sourceSliceText;
+    }
+
+    /**
+     * Sets whether the code of Java nodes is sliced from the source instead of being pretty-printed. Sliced code
+     * consists of the tokens of a node without comments, separated by a single space wherever the source contains
+     * whitespace. Slicing is much cheaper than pretty-printing, but the code differs from the pretty-printed code,
+     * e.g., in the spacing of operators, so main trees created in different modes cannot be combined.
+     *
+     * @param sourceSliceText true to slice the code from the source
+     */
+    public void setSourceSliceText(final boolean sourceSliceText) {
+        this.sourceSliceText = sourceSliceText;
+    }
+
+    /**
+     * Returns whether the files of a variant are parsed in parallel.
+     *
+     * @return true if the files are parsed in parallel
+     */
+    public boolean isParallelFiles() {
+        return parallelFiles;
+    }
+
+    /**
+     * Sets whether the files of a variant are parsed in parallel in the common fork/join pool. The folders and
+     * files of the variant are still visited sequentially, so the resulting AST is the same as in sequential mode.
+     * This helps when a few large variants are parsed on a machine with many cores.
+     *
+     * @param parallelFiles true to parse the files in parallel
+     */
+    public void setParallelFiles(final boolean parallelFiles) {
+        this.parallelFiles = parallelFiles;
+    }
+
+    /**
+     * Returns the filter that decides which files are ingested.
+     *
+     * @return the filter, or null if every file is ingested
+     */
+    public IngestionFilter getIngestionFilter() {
+        return ingestionFilter;
+    }
+
+    /**
+     * Sets the filter that decides which files are ingested.
+     *
+     * @param ingestionFilter the filter, or null to ingest every file
+     */
+    public void setIngestionFilter(final IngestionFilter ingestionFilter) {
+        this.ingestionFilter = ingestionFilter;
+    }
+}
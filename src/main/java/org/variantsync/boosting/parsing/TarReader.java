@@ -0,0 +1,257 @@
+package org.variantsync.boosting.parsing;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the entries of a tar archive from a stream, one after another.
+ * <p>
+ * Supports the ustar format with GNU long names and the paths of pax extended headers, which covers the archives
+ * written by GNU tar, bsdtar, and git archive. Other information of extended headers is ignored.
+ */
+final class TarReader implements Closeable {
+    private static final int BLOCK_SIZE = 512;
+
+    /**
+     * An entry of a tar archive.
+     */
+    static final class Entry {
+        private final String name;
+        private final char type;
+        private final long size;
+
+        private Entry(final String name, final char type, final long size) {
+            this.name = name;
+            this.type = type;
+            this.size = size;
+        }
+
+        /**
+         * Returns the path of the entry within the archive, as stored.
+         */
+        String getName() {
+            return name;
+        }
+
+        /**
+         * Returns whether the entry is a folder.
+         */
+        boolean isDirectory() {
+            return type == '5' || (isRegularFile() && name.endsWith("/"));
+        }
+
+        /**
+         * Returns whether the entry is a regular file.
+         */
+        boolean isRegularFile() {
+            return type == '0' || type == '\0' || type == '7';
+        }
+
+        /**
+         * Returns the size of the content of the entry in bytes.
+         */
+        long getSize() {
+            return size;
+        }
+    }
+
+    private final InputStream in;
+    private final byte[] header = new byte[BLOCK_SIZE];
+    // the bytes of the content of the current entry that have not been read yet, and the padding after them
+    private long remaining;
+    private long padding;
+
+    /**
+     * Constructs a TarReader that reads from the given stream.
+     *
+     * @param in the stream of the archive, which is closed with this reader
+     */
+    TarReader(final InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Advances to the next entry, skipping the unread content of the current entry.
+     *
+     * @return the next entry, or null at the end of the archive
+     * @throws IOException if the archive cannot be read or is malformed
+     */
+    Entry next() throws IOException {
+        String longName = null;
+        while (true) {
+            skip(remaining + padding);
+            remaining = 0;
+            padding = 0;
+            final int read = in.readNBytes(header, 0, BLOCK_SIZE);
+            if (read == 0 || isZeroBlock()) {
+                return null;
+            }
+            if (read < BLOCK_SIZE) {
+                throw new EOFException("Truncated tar header");
+            }
+            checkChecksum();
+            final long size = parseNumber(124, 12);
+            remaining = size;
+            padding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+            final char type = (char) header[156];
+            switch (type) {
+                case 'L':
+                    // GNU long name of the following entry
+                    longName = parseString(readContent(), 0, (int) size);
+                    break;
+                case 'x': {
+                    // pax extended header of the following entry
+                    final String path = parsePaxPath(readContent());
+                    if (path != null) {
+                        longName = path;
+                    }
+                    break;
+                }
+                case 'g':
+                case 'K':
+                    // global pax header and GNU long link name
+                    break;
+                default:
+                    return new Entry(longName != null ? longName : parseName(), type, size);
+            }
+        }
+    }
+
+    /**
+     * Reads the content of the current entry.
+     *
+     * @return the content
+     * @throws IOException if the archive cannot be read or the content is too large for an array
+     */
+    byte[] readContent() throws IOException {
+        if (remaining > Integer.MAX_VALUE - 8) {
+            throw new IOException("Tar entry too large: " + remaining + " bytes");
+        }
+        final byte[] content = new byte[(int) remaining];
+        if (in.readNBytes(content, 0, content.length) < content.length) {
+            throw new EOFException("Truncated tar entry");
+        }
+        remaining = 0;
+        return content;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void skip(long count) throws IOException {
+        while (count > 0) {
+            final long skipped = in.skip(count);
+            if (skipped <= 0) {
+                // skip may make no progress on some streams, so fall back to reading
+                if (in.read() < 0) {
+                    throw new EOFException("Truncated tar entry");
+                }
+                count--;
+            } else {
+                count -= skipped;
+            }
+        }
+    }
+
+    private boolean isZeroBlock() {
+        for (final byte b : header) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void checkChecksum() throws IOException {
+        long sum = 0;
+        long signedSum = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            // the checksum field itself counts as spaces
+            sum += i >= 148 && i < 156 ? ' ' : header[i] & 0xFF;
+            signedSum += i >= 148 && i < 156 ? ' ' : header[i];
+        }
+        // some old implementations sum signed bytes
+        final long checksum = parseNumber(148, 8);
+        if (sum != checksum && signedSum != checksum) {
+            throw new IOException("Invalid tar header checksum");
+        }
+    }
+
+    private String parseName() {
+        final String name = parseString(header, 0, 100);
+        // ustar splits long paths into a prefix and a name
+        if (parseString(header, 257, 5).equals("ustar")) {
+            final String prefix = parseString(header, 345, 155);
+            if (!prefix.isEmpty()) {
+                return prefix + "/" + name;
+            }
+        }
+        return name;
+    }
+
+    private long parseNumber(final int offset, final int length) throws IOException {
+        if ((header[offset] & 0x80) != 0) {
+            // base-256 encoding of large numbers
+            long value = header[offset] & 0x7F;
+            for (int i = offset + 1; i < offset + length; i++) {
+                value = (value << 8) | (header[i] & 0xFF);
+            }
+            return value;
+        }
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            final byte b = header[i];
+            if (b == 0 || (b == ' ' && value != 0)) {
+                break;
+            }
+            if (b == ' ') {
+                continue;
+            }
+            if (b < '0' || b > '7') {
+                throw new IOException("Invalid number in tar header");
+            }
+            value = (value << 3) + (b - '0');
+        }
+        return value;
+    }
+
+    private static String parseString(final byte[] bytes, final int offset, final int length) {
+        int end = offset;
+        while (end < offset + length && bytes[end] != 0) {
+            end++;
+        }
+        return new String(bytes, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static String parsePaxPath(final byte[] content) throws IOException {
+        // records of the form "<length> <key>=<value>\n", where the length includes the whole record
+        String path = null;
+        int offset = 0;
+        while (offset < content.length) {
+            int space = offset;
+            while (space < content.length && content[space] != ' ') {
+                space++;
+            }
+            final int length;
+            try {
+                length = Integer.parseInt(new String(content, offset, space - offset, StandardCharsets.US_ASCII));
+            } catch (final NumberFormatException e) {
+                throw new IOException("Invalid pax header record", e);
+            }
+            if (length <= 0 || offset + length > content.length) {
+                throw new IOException("Invalid pax header record");
+            }
+            final String record = new String(content, space + 1, offset + length - space - 2, StandardCharsets.UTF_8);
+            if (record.startsWith("path=")) {
+                path = record.substring("path=".length());
+            }
+            offset += length;
+        }
+        return path;
+    }
+}
@@ -0,0 +1,71 @@
+package org.variantsync.boosting.persistence;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Buffered reader of primitive values from a channel.
+ * <p>
+ * The channel is read in large blocks into a direct buffer from which the values are decoded.
+ */
+class ChannelInput {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+
+    /**
+     * Constructs a new ChannelInput that reads from the current position of the given channel.
+     *
+     * @param channel the channel to read from
+     */
+    ChannelInput(final ReadableByteChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.buffer.limit(0);
+    }
+
+    byte getByte() throws IOException {
+        ensureAvailable(Byte.BYTES);
+        return buffer.get();
+    }
+
+    int getInt() throws IOException {
+        ensureAvailable(Integer.BYTES);
+        return buffer.getInt();
+    }
+
+    long getLong() throws IOException {
+        ensureAvailable(Long.BYTES);
+        return buffer.getLong();
+    }
+
+    void getBytes(final byte[] values) throws IOException {
+        int offset = 0;
+        while (offset < values.length) {
+            if (!buffer.hasRemaining()) {
+                fill();
+            }
+            final int length = Math.min(buffer.remaining(), values.length - offset);
+            buffer.get(values, offset, length);
+            offset += length;
+        }
+    }
+
+    private void ensureAvailable(final int bytes) throws IOException {
+        while (buffer.remaining() < bytes) {
+            fill();
+        }
+    }
+
+    private void fill() throws IOException {
+        buffer.compact();
+        final int read = channel.read(buffer);
+        buffer.flip();
+        if (read < 0) {
+            throw new EOFException("Unexpected end of data");
+        }
+    }
+}
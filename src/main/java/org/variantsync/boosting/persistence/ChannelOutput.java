@@ -0,0 +1,110 @@
+package org.variantsync.boosting.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Buffered writer of primitive values to a file channel.
+ * <p>
+ * Values are collected in a large direct buffer that is only handed to the channel when it is full, so that
+ * writing millions of small values results in few large writes.
+ */
+class ChannelOutput implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private long position;
+
+    /**
+     * Constructs a new ChannelOutput that appends to the given channel, starting at its current position.
+     *
+     * @param channel the channel to write to
+     * @throws IOException if the position of the channel cannot be determined
+     */
+    ChannelOutput(final FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.position = channel.position();
+    }
+
+    /**
+     * Returns the position in the file at which the next value will be written.
+     */
+    long position() {
+        return position;
+    }
+
+    void putByte(final byte value) throws IOException {
+        ensureCapacity(Byte.BYTES);
+        buffer.put(value);
+        position += Byte.BYTES;
+    }
+
+    void putInt(final int value) throws IOException {
+        ensureCapacity(Integer.BYTES);
+        buffer.putInt(value);
+        position += Integer.BYTES;
+    }
+
+    void putLong(final long value) throws IOException {
+        ensureCapacity(Long.BYTES);
+        buffer.putLong(value);
+        position += Long.BYTES;
+    }
+
+    void putBytes(final byte[] values) throws IOException {
+        int offset = 0;
+        while (offset < values.length) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            final int length = Math.min(buffer.remaining(), values.length - offset);
+            buffer.put(values, offset, length);
+            offset += length;
+        }
+        position += values.length;
+    }
+
+    /**
+     * Writes the given bytes at the given absolute file position, e.g., to fill in a header whose content is only
+     * known after all sections have been written. Buffered values are flushed first.
+     *
+     * @param filePosition the position in the file
+     * @param values       the bytes to write
+     * @throws IOException if writing fails
+     */
+    void putAt(final long filePosition, final ByteBuffer values) throws IOException {
+        flush();
+        long target = filePosition;
+        while (values.hasRemaining()) {
+            target += channel.write(values, target);
+        }
+    }
+
+    private void ensureCapacity(final int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    /**
+     * Hands all buffered values to the channel.
+     *
+     * @throws IOException if writing fails
+     */
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+}
@@ -0,0 +1,181 @@
+package org.variantsync.boosting.persistence;
+
+import org.tinylog.Logger;
+
+import org.variantsync.boosting.datastructure.ASTNode;
+import org.variantsync.boosting.datastructure.Association;
+import org.variantsync.boosting.datastructure.CustomHashSet;
+import org.variantsync.boosting.datastructure.Feature;
+import org.variantsync.boosting.datastructure.MainTree;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A snapshot of the state of the comparison-based association extraction after a number of variants have been
+ * merged into the main tree.
+ * <p>
+ * A checkpoint holds the main tree, the associations computed so far, all features seen so far, and the names of
+ * the processed variants (in processing order) together with the main tree nodes that correspond to each of them.
+ * Checkpoints are written as compressed object streams to a temporary file that is then atomically renamed, so
+ * that a crash during writing never destroys the previous checkpoint.
+ */
+public class Checkpoint implements Serializable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final MainTree mainTree;
+    private final CustomHashSet<Association> associations;
+    private final CustomHashSet<Feature> allFeatures;
+    private final List<String> processedVariants;
+    private final List<CustomHashSet<ASTNode>> processedVariantNodes;
+
+    /**
+     * Constructs a new Checkpoint from the current state of the association extraction.
+     *
+     * @param mainTree              the main tree into which the processed variants have been merged
+     * @param associations          the associations computed so far
+     * @param allFeatures           all features encountered so far
+     * @param processedVariants     the names of the processed variants in processing order
+     * @param processedVariantNodes for each processed variant, the main tree nodes corresponding to its AST nodes
+     */
+    public Checkpoint(final MainTree mainTree, final CustomHashSet<Association> associations,
+                      final CustomHashSet<Feature> allFeatures, final List<String> processedVariants,
+                      final List<CustomHashSet<ASTNode>> processedVariantNodes) {
+        if (processedVariants.size() != processedVariantNodes.size()) {
+            throw new IllegalArgumentException("Expected main tree nodes for each of the "
+                    + processedVariants.size() + " processed variants, got " + processedVariantNodes.size());
+        }
+        this.mainTree = mainTree;
+        this.associations = associations;
+        this.allFeatures = allFeatures;
+        this.processedVariants = new ArrayList<>(processedVariants);
+        this.processedVariantNodes = new ArrayList<>(processedVariantNodes);
+    }
+
+    /**
+     * Saves the given checkpoint to the given file. The checkpoint is first written to a temporary file in the same
+     * folder, which then replaces the target file by an atomic rename.
+     *
+     * @param checkpoint The checkpoint to be saved
+     * @param filePath   The file to which the checkpoint is saved
+     * @throws UncheckedIOException If an IOException occurs while creating directories or writing the checkpoint
+     */
+    public static void saveCheckpoint(final Checkpoint checkpoint, final Path filePath) {
+        Logger.info("Saving checkpoint after " + checkpoint.numberOfProcessedVariants() + " variants to " + filePath);
+        final Path tmpPath = filePath.resolveSibling(filePath.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(filePath.toAbsolutePath().getParent());
+        } catch (final IOException e) {
+            Logger.error("Was not able to create directories for " + filePath, e);
+            throw new UncheckedIOException(e);
+        }
+        try (final ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmpPath), BUFFER_SIZE), BUFFER_SIZE))) {
+            out.writeObject(checkpoint);
+        } catch (final IOException e) {
+            Logger.error("Was not able to write checkpoint to " + tmpPath, e);
+            throw new UncheckedIOException(e);
+        }
+        try {
+            try {
+                Files.move(tmpPath, filePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Logger.warn("Atomic rename is not supported for " + filePath + ", falling back to a plain move");
+                Files.move(tmpPath, filePath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (final IOException e) {
+            Logger.error("Was not able to move checkpoint to " + filePath, e);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Loads a checkpoint from the given file.
+     *
+     * @param filePath The file containing the checkpoint
+     * @return the loaded checkpoint
+     * @throws UncheckedIOException If an IOException occurs while reading the file
+     * @throws RuntimeException     If a class of the checkpoint is not found
+     */
+    public static Checkpoint loadCheckpoint(final Path filePath) {
+        Logger.info("Loading checkpoint from " + filePath);
+        try (final ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(
+                new BufferedInputStream(Files.newInputStream(filePath), BUFFER_SIZE), BUFFER_SIZE))) {
+            return (Checkpoint) in.readObject();
+        } catch (final IOException e) {
+            Logger.error("Was not able to read file: ", e);
+            throw new UncheckedIOException(e);
+        } catch (final ClassNotFoundException e) {
+            Logger.error("Checkpoint class not found", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the main tree into which the processed variants have been merged.
+     *
+     * @return the main tree of this checkpoint
+     */
+    public MainTree getMainTree() {
+        return mainTree;
+    }
+
+    /**
+     * Returns the associations computed from the processed variants.
+     *
+     * @return the associations of this checkpoint
+     */
+    public CustomHashSet<Association> getAssociations() {
+        return associations;
+    }
+
+    /**
+     * Returns all features encountered in the processed variants.
+     *
+     * @return the features of this checkpoint
+     */
+    public CustomHashSet<Feature> getAllFeatures() {
+        return allFeatures;
+    }
+
+    /**
+     * Returns the names of the processed variants in the order in which they have been processed.
+     *
+     * @return the names of the processed variants
+     */
+    public List<String> getProcessedVariants() {
+        return processedVariants;
+    }
+
+    /**
+     * Returns the main tree nodes corresponding to the AST nodes of the processed variant with the given index.
+     *
+     * @param index the index of the variant in processing order
+     * @return the main tree nodes of the variant
+     */
+    public CustomHashSet<ASTNode> getMainTreeNodes(final int index) {
+        return processedVariantNodes.get(index);
+    }
+
+    /**
+     * Returns the number of variants that have been processed when this checkpoint was created.
+     *
+     * @return the number of processed variants
+     */
+    public int numberOfProcessedVariants() {
+        return processedVariants.size();
+    }
+}
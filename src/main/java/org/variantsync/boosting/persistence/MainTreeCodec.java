@@ -0,0 +1,663 @@
+package org.variantsync.boosting.persistence;
+
+import org.variantsync.boosting.TraceBoosting;
+import org.variantsync.boosting.datastructure.ASTNode;
+import org.variantsync.boosting.datastructure.ChildSet;
+import org.variantsync.boosting.datastructure.CustomHashSet;
+import org.variantsync.boosting.datastructure.Feature;
+import org.variantsync.boosting.datastructure.FormulaDictionary;
+import org.variantsync.boosting.datastructure.MainTree;
+import org.variantsync.boosting.parsing.AbstractAST;
+import org.variantsync.boosting.parsing.CAST;
+import org.variantsync.boosting.parsing.JavaAST;
+import org.variantsync.boosting.parsing.LineAST;
+import org.variantsync.boosting.position.FilePosition;
+import org.variantsync.boosting.position.LinePosition;
+import org.variantsync.boosting.position.Position;
+import org.variantsync.boosting.position.ProductPosition;
+import org.variantsync.boosting.position.RootPosition;
+import org.variantsync.boosting.position.UnspecifiedPosition;
+import org.variantsync.boosting.product.Variant;
+
+import org.logicng.formulas.Formula;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Versioned binary format for persisting a {@link MainTree}.
+ * <p>
+ * The format consists of a fixed-size header followed by the sections listed below. All numbers are big-endian.
+ * <ol>
+ * <li>Strings: a string table holding each distinct code fragment, file path, variant name, feature name, and
+ * feature variable once, as {@code stringCount + 1} long offsets followed by the UTF-8 bytes.</li>
+ * <li>Formulas: the {@link FormulaDictionary} of all mappings, as the number of variables, their string IDs, the
+ * number of encoded ints, and the encoded ints. Nodes refer to their mapping by its ID in the dictionary.</li>
+ * <li>Positions: each distinct position once, packed as kind (byte), path string ID, line, and column (ints).</li>
+ * <li>Nodes: the nodes of the tree in pre-order as column arrays of parent index, type, code string ID, formula
+ * ID, sequence number, position ID, and the number of product positions (-1 if the node has none).</li>
+ * <li>Variants: name string ID, feature string IDs, and the IDs of the main tree nodes of each variant.</li>
+ * <li>Product positions: pairs of variant ID and position ID, grouped by node in node order.</li>
+ * <li>Path index: the number of indexed file paths followed by one record per path, sorted by
+ * path, holding the path string ID, the first entry in the line index (long), and the number of entries.</li>
+ * <li>Line index: for each path, the lines of its product positions together with the IDs of
+ * the nodes at these lines, packed into longs as {@code line << 32 | node} and sorted.</li>
+ * </ol>
+ * Strings, formulas and positions are referenced by IDs, so that each of them is decoded only once when the tree
+ * is loaded. The product ASTs of the variants are not stored; they are forgotten after merging anyway.
+ * The fixed-size column arrays and the indices allow {@link MappedMainTree} to answer trace queries without
+ * loading the whole tree.
+ */
+public class MainTreeCodec {
+    /** The magic number at the start of each file, "TBMT". */
+    public static final int MAGIC = 0x54424D54;
+    /** The version of the format written by this codec. */
+    public static final int VERSION = 1;
+
+    static final int SECTION_STRINGS = 0;
+    static final int SECTION_FORMULAS = 1;
+    static final int SECTION_POSITIONS = 2;
+    static final int SECTION_NODES = 3;
+    static final int SECTION_VARIANTS = 4;
+    static final int SECTION_PRODUCT_POSITIONS = 5;
+    static final int SECTION_PATH_INDEX = 6;
+    static final int SECTION_LINE_INDEX = 7;
+    static final int NUMBER_OF_SECTIONS = 8;
+    static final int HEADER_SIZE = 8 * Integer.BYTES + Long.BYTES + NUMBER_OF_SECTIONS * Long.BYTES;
+    static final int PATH_INDEX_ENTRY_SIZE = 2 * Integer.BYTES + Long.BYTES;
+
+    static final byte AST_LINES = 0;
+    static final byte AST_C = 1;
+    static final byte AST_JAVA = 2;
+
+    static final byte POSITION_ROOT = 0;
+    static final byte POSITION_UNSPECIFIED = 1;
+    static final byte POSITION_FILE = 2;
+    static final byte POSITION_LINE = 3;
+    static final int POSITION_SIZE = Byte.BYTES + 3 * Integer.BYTES;
+
+    static final int NONE = -1;
+
+    private MainTreeCodec() {
+    }
+
+    /**
+     * Checks whether the given file starts with the magic number of this format.
+     *
+     * @param filePath the file to check
+     * @return true if the file is a binary main tree, false otherwise
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean isBinaryMainTree(final Path filePath) throws IOException {
+        try (final FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            final ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+            while (magic.hasRemaining()) {
+                if (channel.read(magic) < 0) {
+                    return false;
+                }
+            }
+            return magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Writes the given main tree to the given file.
+     *
+     * @param mainTree the main tree to write
+     * @param filePath the file to write to; an existing file is replaced
+     * @throws IOException if writing fails
+     */
+    public static void write(final MainTree mainTree, final Path filePath) throws IOException {
+        new Encoder(mainTree).write(filePath);
+    }
+
+    /**
+     * Reads a main tree from the given file.
+     *
+     * @param filePath the file to read from
+     * @return the main tree stored in the file
+     * @throws IOException if reading fails or the file is not a binary main tree of a supported version
+     */
+    public static MainTree read(final Path filePath) throws IOException {
+        try (final FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            return new Decoder(new ChannelInput(channel)).read();
+        }
+    }
+
+    static byte astKind(final AbstractAST ast) {
+        // CAST is a LineAST, so it has to be checked first
+        if (ast instanceof CAST) {
+            return AST_C;
+        } else if (ast instanceof JavaAST) {
+            return AST_JAVA;
+        } else if (ast instanceof LineAST) {
+            return AST_LINES;
+        }
+        throw new UnsupportedOperationException("Unsupported AST type " + ast.getClass().getName());
+    }
+
+    static void checkVersion(final int magic, final int version) throws IOException {
+        if (magic != MAGIC) {
+            throw new IOException("Not a binary main tree");
+        }
+        if (version != VERSION) {
+            throw new IOException("Unsupported main tree format version " + version + ", expected " + VERSION);
+        }
+    }
+
+    /**
+     * Packs a line and the ID of a node at that line into an entry of a line index. Entries sort by line first and
+     * by node second.
+     *
+     * @param line the line
+     * @param node the ID of the node, which is not negative
+     * @return the entry
+     */
+    public static long lineIndexEntry(final int line, final int node) {
+        return ((long) line << 32) | (node & 0xFFFFFFFFL);
+    }
+
+    static FormulaDictionary decodeFormulas(final List<String> variables, final int[] encodedNodes)
+            throws IOException {
+        try {
+            return FormulaDictionary.decode(TraceBoosting.f, variables, encodedNodes);
+        } catch (final IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("Was not able to decode the mappings", e);
+        }
+    }
+
+    /**
+     * Collects the strings, formulas, positions, and variants of a main tree, assigns IDs to them, and writes them.
+     */
+    private static class Encoder {
+        private final MainTree mainTree;
+        private final List<ASTNode> nodes = new ArrayList<>();
+        private final Map<ASTNode, Integer> nodeIds = new IdentityHashMap<>();
+        private final List<String> strings = new ArrayList<>();
+        private final Map<String, Integer> stringIds = new HashMap<>();
+        private final FormulaDictionary formulas = new FormulaDictionary(TraceBoosting.f);
+        private final List<Position> positions = new ArrayList<>();
+        private final Map<Position, Integer> positionIds = new HashMap<>();
+        private final List<Variant> variants = new ArrayList<>();
+        private final Map<Variant, Integer> variantIds = new IdentityHashMap<>();
+        private long productPositionCount = 0;
+
+        private Encoder(final MainTree mainTree) {
+            this.mainTree = mainTree;
+        }
+
+        private void write(final Path filePath) throws IOException {
+            collect();
+            try (final FileChannel channel = FileChannel.open(filePath, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 final ChannelOutput out = new ChannelOutput(channel)) {
+                final long[] sectionOffsets = new long[NUMBER_OF_SECTIONS];
+                // the header is written last, when the section offsets are known
+                out.putBytes(new byte[HEADER_SIZE]);
+
+                sectionOffsets[SECTION_STRINGS] = out.position();
+                writeStrings(out);
+                sectionOffsets[SECTION_FORMULAS] = out.position();
+                writeFormulas(out);
+                sectionOffsets[SECTION_POSITIONS] = out.position();
+                for (final Position position : positions) {
+                    writePosition(out, position);
+                }
+                sectionOffsets[SECTION_NODES] = out.position();
+                writeNodes(out);
+                sectionOffsets[SECTION_VARIANTS] = out.position();
+                writeVariants(out);
+                sectionOffsets[SECTION_PRODUCT_POSITIONS] = out.position();
+                writeProductPositions(out);
+                writeIndices(out, sectionOffsets);
+
+                final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC);
+                header.putInt(VERSION);
+                header.putInt(astKind(mainTree.getTree()));
+                header.putInt(nodes.size());
+                header.putInt(strings.size());
+                header.putInt(formulas.size());
+                header.putInt(positions.size());
+                header.putInt(variants.size());
+                header.putLong(productPositionCount);
+                for (final long offset : sectionOffsets) {
+                    header.putLong(offset);
+                }
+                header.flip();
+                out.putAt(0, header);
+            }
+        }
+
+        private void collect() {
+            // pre-order traversal with an explicit stack, as trees can be deep
+            final Deque<ASTNode> stack = new ArrayDeque<>();
+            stack.push(mainTree.getTree().getRoot());
+            while (!stack.isEmpty()) {
+                final ASTNode node = stack.pop();
+                nodeIds.put(node, nodes.size());
+                nodes.add(node);
+                stringId(node.getCode());
+                formulaId(node.getMapping());
+                positionId(node.getStartPosition());
+                final Set<ProductPosition> productPositions = mainTree.getProductPositions(node);
+                if (productPositions != null) {
+                    for (final ProductPosition productPosition : productPositions) {
+                        variantId(productPosition.variant);
+                        positionId(productPosition.position);
+                        productPositionCount++;
+                    }
+                }
+                // in reverse, so that siblings are written in their order
+                final ChildSet children = node.getChildren();
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    stack.push(children.get(i));
+                }
+            }
+            for (final String variable : formulas.getVariables()) {
+                stringId(variable);
+            }
+        }
+
+        private int stringId(final String string) {
+            if (string == null) {
+                return NONE;
+            }
+            return stringIds.computeIfAbsent(string, s -> {
+                strings.add(s);
+                return strings.size() - 1;
+            });
+        }
+
+        private int formulaId(final Formula formula) {
+            if (formula == null) {
+                return NONE;
+            }
+            return formulas.add(formula);
+        }
+
+        private void writeFormulas(final ChannelOutput out) throws IOException {
+            final List<String> variables = formulas.getVariables();
+            out.putInt(variables.size());
+            for (final String variable : variables) {
+                out.putInt(stringIds.get(variable));
+            }
+            final int[] encodedNodes = formulas.getEncodedNodes();
+            out.putInt(encodedNodes.length);
+            for (final int value : encodedNodes) {
+                out.putInt(value);
+            }
+        }
+
+        private int positionId(final Position position) {
+            return positionIds.computeIfAbsent(position, p -> {
+                if (p instanceof FilePosition || p instanceof LinePosition) {
+                    stringId(p.serializedPosition()[1]);
+                }
+                positions.add(p);
+                return positions.size() - 1;
+            });
+        }
+
+        private int variantId(final Variant variant) {
+            return variantIds.computeIfAbsent(variant, v -> {
+                stringId(v.getName());
+                for (final Feature feature : v.getFeatures()) {
+                    stringId(feature.getName());
+                }
+                variants.add(v);
+                return variants.size() - 1;
+            });
+        }
+
+        private void writeStrings(final ChannelOutput out) throws IOException {
+            final byte[][] encoded = new byte[strings.size()][];
+            long offset = 0;
+            out.putLong(offset);
+            for (int i = 0; i < encoded.length; i++) {
+                encoded[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+                offset += encoded[i].length;
+                out.putLong(offset);
+            }
+            for (final byte[] bytes : encoded) {
+                out.putBytes(bytes);
+            }
+        }
+
+        private void writePosition(final ChannelOutput out, final Position position) throws IOException {
+            if (position instanceof RootPosition) {
+                out.putByte(POSITION_ROOT);
+                out.putInt(NONE);
+            } else if (position instanceof UnspecifiedPosition) {
+                out.putByte(POSITION_UNSPECIFIED);
+                out.putInt(NONE);
+            } else if (position instanceof FilePosition) {
+                out.putByte(POSITION_FILE);
+                out.putInt(stringIds.get(position.serializedPosition()[1]));
+            } else if (position instanceof LinePosition) {
+                out.putByte(POSITION_LINE);
+                out.putInt(stringIds.get(position.serializedPosition()[1]));
+            } else {
+                throw new UnsupportedOperationException("Unsupported position type " + position.getClass().getName());
+            }
+            out.putInt(position.lineNumber());
+            out.putInt(position.columnNumber());
+        }
+
+        private void writeNodes(final ChannelOutput out) throws IOException {
+            for (final ASTNode node : nodes) {
+                final ASTNode parent = node.getParent();
+                out.putInt(parent == null ? NONE : nodeIds.get(parent));
+            }
+            for (final ASTNode node : nodes) {
+                out.putByte((byte) node.getType().ordinal());
+            }
+            for (final ASTNode node : nodes) {
+                out.putInt(stringId(node.getCode()));
+            }
+            for (final ASTNode node : nodes) {
+                out.putInt(formulaId(node.getMapping()));
+            }
+            for (final ASTNode node : nodes) {
+                out.putInt(node.getSequenceNumber());
+            }
+            for (final ASTNode node : nodes) {
+                out.putInt(positionId(node.getStartPosition()));
+            }
+            for (final ASTNode node : nodes) {
+                final Set<ProductPosition> productPositions = mainTree.getProductPositions(node);
+                out.putInt(productPositions == null ? NONE : productPositions.size());
+            }
+        }
+
+        private void writeVariants(final ChannelOutput out) throws IOException {
+            for (final Variant variant : variants) {
+                out.putInt(stringId(variant.getName()));
+                out.putInt(variant.getFeatures().size());
+                for (final Feature feature : variant.getFeatures()) {
+                    out.putInt(stringId(feature.getName()));
+                }
+                out.putInt(variant.getAstNodesMainTree().size());
+                for (final ASTNode node : variant.getAstNodesMainTree()) {
+                    final Integer nodeId = nodeIds.get(node);
+                    if (nodeId == null) {
+                        throw new IllegalStateException("Variant " + variant.getName()
+                                + " refers to a node that is not part of the main tree");
+                    }
+                    out.putInt(nodeId);
+                }
+            }
+        }
+
+        private void writeIndices(final ChannelOutput out, final long[] sectionOffsets) throws IOException {
+            // count the line positions per path
+            final Map<Integer, Integer> entriesPerPath = new HashMap<>();
+            for (final ASTNode node : nodes) {
+                final Set<ProductPosition> productPositions = mainTree.getProductPositions(node);
+                if (productPositions != null) {
+                    for (final ProductPosition productPosition : productPositions) {
+                        if (productPosition.position instanceof LinePosition) {
+                            entriesPerPath.merge(pathId(productPosition.position), 1, Integer::sum);
+                        }
+                    }
+                }
+            }
+            final List<Integer> paths = new ArrayList<>(entriesPerPath.keySet());
+            paths.sort((a, b) -> strings.get(a).compareTo(strings.get(b)));
+
+            // assign each path its range in the line index and fill the ranges (bucket sort by path)
+            final Map<Integer, Long> firstEntries = new HashMap<>();
+            final Map<Integer, Long> nextEntries = new HashMap<>();
+            long entryCount = 0;
+            for (final Integer path : paths) {
+                firstEntries.put(path, entryCount);
+                nextEntries.put(path, entryCount);
+                entryCount += entriesPerPath.get(path);
+            }
+            final long[] entries = new long[Math.toIntExact(entryCount)];
+            for (int nodeId = 0; nodeId < nodes.size(); nodeId++) {
+                final Set<ProductPosition> productPositions = mainTree.getProductPositions(nodes.get(nodeId));
+                if (productPositions != null) {
+                    for (final ProductPosition productPosition : productPositions) {
+                        if (productPosition.position instanceof LinePosition) {
+                            final long entry = nextEntries.merge(pathId(productPosition.position), 1L, Long::sum) - 1;
+                            entries[(int) entry] = lineIndexEntry(productPosition.position.lineNumber(), nodeId);
+                        }
+                    }
+                }
+            }
+
+            sectionOffsets[SECTION_PATH_INDEX] = out.position();
+            out.putInt(paths.size());
+            for (final Integer path : paths) {
+                final long firstEntry = firstEntries.get(path);
+                final int count = entriesPerPath.get(path);
+                Arrays.sort(entries, (int) firstEntry, (int) firstEntry + count);
+                out.putInt(path);
+                out.putLong(firstEntry);
+                out.putInt(count);
+            }
+            sectionOffsets[SECTION_LINE_INDEX] = out.position();
+            for (final long entry : entries) {
+                out.putLong(entry);
+            }
+        }
+
+        private int pathId(final Position position) {
+            return stringIds.get(position.serializedPosition()[1]);
+        }
+
+        private void writeProductPositions(final ChannelOutput out) throws IOException {
+            for (final ASTNode node : nodes) {
+                final Set<ProductPosition> productPositions = mainTree.getProductPositions(node);
+                if (productPositions != null) {
+                    for (final ProductPosition productPosition : productPositions) {
+                        out.putInt(variantIds.get(productPosition.variant));
+                        out.putInt(positionIds.get(productPosition.position));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the sections of a binary main tree in the order in which they have been written.
+     */
+    private static class Decoder {
+        private final ChannelInput in;
+        private String[] strings;
+        private Formula[] formulas;
+        private Position[] positions;
+        private ASTNode[] nodes;
+        private int[] productPositionCounts;
+        private Variant[] variants;
+
+        private Decoder(final ChannelInput in) {
+            this.in = in;
+        }
+
+        private MainTree read() throws IOException {
+            final int magic = in.getInt();
+            final int version = in.getInt();
+            checkVersion(magic, version);
+            final int astKind = in.getInt();
+            final int nodeCount = in.getInt();
+            strings = new String[in.getInt()];
+            formulas = new Formula[in.getInt()];
+            positions = new Position[in.getInt()];
+            variants = new Variant[in.getInt()];
+            in.getLong(); // number of product positions
+            for (int i = 0; i < NUMBER_OF_SECTIONS; i++) {
+                in.getLong(); // sections are read sequentially, so their offsets are not needed
+            }
+
+            readStrings();
+            readFormulas();
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = readPosition();
+            }
+            readNodes(nodeCount);
+            readVariants();
+            final Map<ASTNode, Set<ProductPosition>> positionMap = readProductPositions();
+
+            // the nodes are stored in pre-order, so they keep their ids
+            final List<ASTNode> astNodes = Arrays.asList(nodes).subList(1, nodes.length);
+            final AbstractAST ast;
+            switch (astKind) {
+                case AST_C:
+                    ast = new CAST(nodes[0], astNodes);
+                    break;
+                case AST_JAVA:
+                    ast = new JavaAST(nodes[0], astNodes);
+                    break;
+                case AST_LINES:
+                    ast = new LineAST(nodes[0], astNodes);
+                    break;
+                default:
+                    throw new IOException("Unknown AST type " + astKind);
+            }
+            return new MainTree(ast, positionMap);
+        }
+
+        private void readStrings() throws IOException {
+            final long[] offsets = new long[strings.length + 1];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = in.getLong();
+            }
+            for (int i = 0; i < strings.length; i++) {
+                final byte[] bytes = new byte[Math.toIntExact(offsets[i + 1] - offsets[i])];
+                in.getBytes(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+
+        private void readFormulas() throws IOException {
+            final List<String> variables = new ArrayList<>();
+            final int variableCount = in.getInt();
+            for (int i = 0; i < variableCount; i++) {
+                variables.add(strings[in.getInt()]);
+            }
+            final int[] encodedNodes = new int[in.getInt()];
+            for (int i = 0; i < encodedNodes.length; i++) {
+                encodedNodes[i] = in.getInt();
+            }
+            final FormulaDictionary dictionary = decodeFormulas(variables, encodedNodes);
+            for (int i = 0; i < formulas.length; i++) {
+                formulas[i] = dictionary.get(i);
+            }
+        }
+
+        private Position readPosition() throws IOException {
+            final byte kind = in.getByte();
+            final int pathId = in.getInt();
+            final int line = in.getInt();
+            final int column = in.getInt();
+            switch (kind) {
+                case POSITION_ROOT:
+                    return RootPosition.INSTANCE;
+                case POSITION_UNSPECIFIED:
+                    return UnspecifiedPosition.INSTANCE;
+                case POSITION_FILE:
+                    return new FilePosition(strings[pathId]);
+                case POSITION_LINE:
+                    return new LinePosition(strings[pathId], line, column);
+                default:
+                    throw new IOException("Unknown position type " + kind);
+            }
+        }
+
+        private void readNodes(final int nodeCount) throws IOException {
+            final int[] parents = new int[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                parents[i] = in.getInt();
+            }
+            final ASTNode.NODE_TYPE[] typeValues = ASTNode.NODE_TYPE.values();
+            final ASTNode.NODE_TYPE[] types = new ASTNode.NODE_TYPE[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                types[i] = typeValues[in.getByte()];
+            }
+            final int[] codes = new int[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                codes[i] = in.getInt();
+            }
+            final int[] mappings = new int[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                mappings[i] = in.getInt();
+            }
+            final int[] sequenceNumbers = new int[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                sequenceNumbers[i] = in.getInt();
+            }
+            final int[] nodePositions = new int[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                nodePositions[i] = in.getInt();
+            }
+            nodes = new ASTNode[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                final ASTNode parent = parents[i] == NONE ? null : nodes[parents[i]];
+                final ASTNode node = new ASTNode(parent,
+                        codes[i] == NONE ? null : strings[codes[i]],
+                        positions[nodePositions[i]],
+                        types[i],
+                        mappings[i] == NONE ? null : formulas[mappings[i]]);
+                node.setSequenceNumber(sequenceNumbers[i]);
+                if (parent != null) {
+                    // add directly, as the sequence numbers have already been assigned
+                    parent.getChildren().add(node);
+                }
+                nodes[i] = node;
+            }
+            productPositionCounts = new int[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                productPositionCounts[i] = in.getInt();
+            }
+        }
+
+        private void readVariants() throws IOException {
+            for (int i = 0; i < variants.length; i++) {
+                final String name = strings[in.getInt()];
+                final int featureCount = in.getInt();
+                final CustomHashSet<Feature> features = new CustomHashSet<>();
+                for (int j = 0; j < featureCount; j++) {
+                    features.add(new Feature(strings[in.getInt()]));
+                }
+                final int nodeCount = in.getInt();
+                final CustomHashSet<ASTNode> astNodesMainTree = new CustomHashSet<>();
+                for (int j = 0; j < nodeCount; j++) {
+                    astNodesMainTree.add(nodes[in.getInt()]);
+                }
+                variants[i] = new Variant(name, astNodesMainTree, null, features);
+            }
+        }
+
+        private Map<ASTNode, Set<ProductPosition>> readProductPositions() throws IOException {
+            final Map<ASTNode, Set<ProductPosition>> positionMap = new HashMap<>();
+            for (int i = 0; i < nodes.length; i++) {
+                if (productPositionCounts[i] == NONE) {
+                    continue;
+                }
+                final Set<ProductPosition> productPositions = new HashSet<>();
+                for (int j = 0; j < productPositionCounts[i]; j++) {
+                    final Variant variant = variants[in.getInt()];
+                    productPositions.add(new ProductPosition(variant, positions[in.getInt()]));
+                }
+                positionMap.put(nodes[i], productPositions);
+            }
+            return positionMap;
+        }
+    }
+}
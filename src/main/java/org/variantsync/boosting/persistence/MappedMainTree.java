@@ -0,0 +1,316 @@
+package org.variantsync.boosting.persistence;
+
+import org.variantsync.boosting.datastructure.ASTNode;
+import org.variantsync.boosting.datastructure.FormulaDictionary;
+
+import org.logicng.formulas.Formula;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A read-only view of a main tree that has been saved in the binary format of {@link MainTreeCodec}.
+ * <p>
+ * The file is memory-mapped and nothing is decoded when the view is opened. Nodes are identified by their index in
+ * pre-order and their properties are read from the column arrays of the file on demand. Code fragments and
+ * mappings are only materialized when they are accessed. Trace queries for a line in a file are answered with a
+ * binary search in the path and line indices of the file.
+ * <p>
+ * Files larger than 2 GB are mapped in several overlapping chunks.
+ */
+public class MappedMainTree {
+    private static final long CHUNK_SIZE = 1L << 30;
+    // chunks overlap, so that each primitive value lies completely within one chunk
+    private static final long CHUNK_OVERLAP = Long.BYTES;
+
+    private final MappedByteBuffer[] chunks;
+    private final ASTNode.NODE_TYPE[] typeValues = ASTNode.NODE_TYPE.values();
+    private final int nodeCount;
+    private final int stringCount;
+    private final long[] sectionOffsets;
+    private final int pathCount;
+    private final int formulaCount;
+    // the decoded formula dictionary, published once it is complete
+    private volatile Formula[] formulas;
+
+    private MappedMainTree(final MappedByteBuffer[] chunks) throws IOException {
+        this.chunks = chunks;
+        MainTreeCodec.checkVersion(getInt(0), getInt(Integer.BYTES));
+        this.nodeCount = getInt(3L * Integer.BYTES);
+        this.stringCount = getInt(4L * Integer.BYTES);
+        this.formulaCount = getInt(5L * Integer.BYTES);
+        this.sectionOffsets = new long[MainTreeCodec.NUMBER_OF_SECTIONS];
+        for (int i = 0; i < sectionOffsets.length; i++) {
+            sectionOffsets[i] = getLong(8L * Integer.BYTES + Long.BYTES + (long) i * Long.BYTES);
+        }
+        this.pathCount = getInt(sectionOffsets[MainTreeCodec.SECTION_PATH_INDEX]);
+    }
+
+    /**
+     * Opens a view of the main tree stored in the given file.
+     *
+     * @param filePath the file containing the main tree
+     * @return a view of the main tree
+     * @throws IOException if the file cannot be mapped or is not a binary main tree
+     */
+    public static MappedMainTree open(final Path filePath) throws IOException {
+        try (final FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final int numberOfChunks = (int) Math.max(1, (size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+            final MappedByteBuffer[] chunks = new MappedByteBuffer[numberOfChunks];
+            for (int i = 0; i < chunks.length; i++) {
+                final long start = i * CHUNK_SIZE;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(size - start, CHUNK_SIZE + CHUNK_OVERLAP));
+            }
+            // the mapping stays valid after the channel has been closed
+            return new MappedMainTree(chunks);
+        }
+    }
+
+    /**
+     * Returns the number of nodes in the tree, including the root.
+     */
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the index of the root node.
+     */
+    public int getRoot() {
+        return 0;
+    }
+
+    /**
+     * Returns the index of the parent of the given node, or -1 for the root.
+     *
+     * @param node the index of the node
+     */
+    public int getParent(final int node) {
+        return getInt(column(0, Integer.BYTES, node));
+    }
+
+    /**
+     * Returns the type of the given node.
+     *
+     * @param node the index of the node
+     */
+    public ASTNode.NODE_TYPE getType(final int node) {
+        return typeValues[getByte(column(Integer.BYTES, Byte.BYTES, node))];
+    }
+
+    /**
+     * Returns the code of the given node, decoded from the file.
+     *
+     * @param node the index of the node
+     * @return the code of the node, or null if it has none
+     */
+    public String getCode(final int node) {
+        final int stringId = getInt(column(Integer.BYTES + Byte.BYTES, Integer.BYTES, node));
+        return stringId == MainTreeCodec.NONE ? null : getString(stringId);
+    }
+
+    /**
+     * Returns the sequence number of the given node.
+     *
+     * @param node the index of the node
+     */
+    public int getSequenceNumber(final int node) {
+        return getInt(column(3 * Integer.BYTES + Byte.BYTES, Integer.BYTES, node));
+    }
+
+    /**
+     * Returns the mapping of the given node. The formula dictionary of the file is decoded when the first mapping
+     * is accessed.
+     *
+     * @param node the index of the node
+     * @return the mapping of the node, or null if it has none
+     */
+    public Formula getMapping(final int node) {
+        final int formulaId = getInt(column(2 * Integer.BYTES + Byte.BYTES, Integer.BYTES, node));
+        if (formulaId == MainTreeCodec.NONE) {
+            return null;
+        }
+        Formula[] decoded = formulas;
+        if (decoded == null) {
+            decoded = decodeFormulas();
+        }
+        return decoded[formulaId];
+    }
+
+    private synchronized Formula[] decodeFormulas() {
+        if (formulas != null) {
+            return formulas;
+        }
+        long position = sectionOffsets[MainTreeCodec.SECTION_FORMULAS];
+        final List<String> variables = new ArrayList<>();
+        final int variableCount = getInt(position);
+        position += Integer.BYTES;
+        for (int i = 0; i < variableCount; i++, position += Integer.BYTES) {
+            variables.add(getString(getInt(position)));
+        }
+        final int[] encodedNodes = new int[getInt(position)];
+        position += Integer.BYTES;
+        for (int i = 0; i < encodedNodes.length; i++, position += Integer.BYTES) {
+            encodedNodes[i] = getInt(position);
+        }
+        final FormulaDictionary dictionary;
+        try {
+            dictionary = MainTreeCodec.decodeFormulas(variables, encodedNodes);
+        } catch (final IOException e) {
+            throw new IllegalStateException("Was not able to decode the mappings", e);
+        }
+        final Formula[] decoded = new Formula[formulaCount];
+        for (int i = 0; i < decoded.length; i++) {
+            decoded[i] = dictionary.get(i);
+        }
+        formulas = decoded;
+        return decoded;
+    }
+
+    /**
+     * Returns the indices of all nodes with a product position at the given line of the given file, in ascending
+     * order.
+     *
+     * @param filePath the path of the file, as in the positions of the variants
+     * @param line     the line number, as in the positions of the variants
+     * @return the indices of the nodes, or an empty array if there are none
+     */
+    public int[] findNodes(final String filePath, final int line) {
+        final int pathEntry = findPath(filePath);
+        if (pathEntry < 0) {
+            return new int[0];
+        }
+        final long record = sectionOffsets[MainTreeCodec.SECTION_PATH_INDEX] + Integer.BYTES
+                + (long) pathEntry * MainTreeCodec.PATH_INDEX_ENTRY_SIZE;
+        final long firstEntry = getLong(record + Integer.BYTES);
+        final int entryCount = getInt(record + Integer.BYTES + Long.BYTES);
+
+        // entries are sorted by line, so the first entry at the line is found by a binary search for its lower bound
+        final long lowest = MainTreeCodec.lineIndexEntry(line, 0);
+        long low = firstEntry;
+        long high = firstEntry + entryCount;
+        while (low < high) {
+            final long mid = (low + high) >>> 1;
+            if (lineIndexEntry(mid) < lowest) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int[] result = new int[4];
+        int size = 0;
+        for (long entry = low; entry < firstEntry + entryCount; entry++) {
+            final long value = lineIndexEntry(entry);
+            if ((int) (value >>> 32) != line) {
+                break;
+            }
+            if (size == result.length) {
+                result = Arrays.copyOf(result, size * 2);
+            }
+            result[size++] = (int) value;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Returns the index of a node with a product position at the given line of the given file.
+     *
+     * @param filePath the path of the file, as in the positions of the variants
+     * @param line     the line number, as in the positions of the variants
+     * @return the index of the node, or -1 if there is none
+     */
+    public int findNode(final String filePath, final int line) {
+        final int[] nodes = findNodes(filePath, line);
+        return nodes.length == 0 ? -1 : nodes[0];
+    }
+
+    /**
+     * Returns the mapping of the code at the given line of the given file.
+     *
+     * @param filePath the path of the file, as in the positions of the variants
+     * @param line     the line number, as in the positions of the variants
+     * @return the mapping, or null if there is no node at the given position
+     */
+    public Formula getMapping(final String filePath, final int line) {
+        final int node = findNode(filePath, line);
+        return node < 0 ? null : getMapping(node);
+    }
+
+    private int findPath(final String filePath) {
+        final long records = sectionOffsets[MainTreeCodec.SECTION_PATH_INDEX] + Integer.BYTES;
+        int low = 0;
+        int high = pathCount - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int comparison = getString(getInt(records + (long) mid * MainTreeCodec.PATH_INDEX_ENTRY_SIZE))
+                    .compareTo(filePath);
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private long lineIndexEntry(final long entry) {
+        return getLong(sectionOffsets[MainTreeCodec.SECTION_LINE_INDEX] + entry * Long.BYTES);
+    }
+
+    private long column(final int offsetPerNode, final int width, final int node) {
+        if (node < 0 || node >= nodeCount) {
+            throw new IndexOutOfBoundsException("No node with index " + node);
+        }
+        return sectionOffsets[MainTreeCodec.SECTION_NODES] + (long) offsetPerNode * nodeCount + (long) width * node;
+    }
+
+    private String getString(final int stringId) {
+        final long offsets = sectionOffsets[MainTreeCodec.SECTION_STRINGS];
+        final long start = getLong(offsets + (long) stringId * Long.BYTES);
+        final long end = getLong(offsets + (long) (stringId + 1) * Long.BYTES);
+        final byte[] bytes = new byte[Math.toIntExact(end - start)];
+        long position = offsets + (long) (stringCount + 1) * Long.BYTES + start;
+        int copied = 0;
+        while (copied < bytes.length) {
+            final MappedByteBuffer chunk = chunks[(int) (position / CHUNK_SIZE)];
+            final int offset = (int) (position % CHUNK_SIZE);
+            final int length = (int) Math.min(bytes.length - copied, CHUNK_SIZE - offset);
+            chunk.get(offset, bytes, copied, length);
+            copied += length;
+            position += length;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private byte getByte(final long position) {
+        return chunks[(int) (position / CHUNK_SIZE)].get((int) (position % CHUNK_SIZE));
+    }
+
+    private int getInt(final long position) {
+        return chunks[(int) (position / CHUNK_SIZE)].getInt((int) (position % CHUNK_SIZE));
+    }
+
+    private long getLong(final long position) {
+        return chunks[(int) (position / CHUNK_SIZE)].getLong((int) (position % CHUNK_SIZE));
+    }
+
+    /**
+     * Reads the whole file into memory, e.g., to warm up the page cache before many queries.
+     */
+    public void load() {
+        for (final MappedByteBuffer chunk : chunks) {
+            chunk.load();
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package org.variantsync.boosting.persistence;
+
+import org.variantsync.boosting.TraceBoosting;
+import org.variantsync.boosting.datastructure.ASTNode;
+import org.variantsync.boosting.datastructure.ChildSet;
+import org.variantsync.boosting.datastructure.CustomHashSet;
+import org.variantsync.boosting.datastructure.Feature;
+import org.variantsync.boosting.datastructure.FormulaDictionary;
+import org.variantsync.boosting.parsing.AbstractAST;
+import org.variantsync.boosting.parsing.CAST;
+import org.variantsync.boosting.parsing.JavaAST;
+import org.variantsync.boosting.parsing.LineAST;
+import org.variantsync.boosting.position.FilePosition;
+import org.variantsync.boosting.position.LinePosition;
+import org.variantsync.boosting.position.Position;
+import org.variantsync.boosting.position.RootPosition;
+import org.variantsync.boosting.position.UnspecifiedPosition;
+import org.variantsync.boosting.product.Variant;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Versioned binary format for caching parsed variants, as written by
+ * {@link org.variantsync.boosting.product.ProductSaveTask}.
+ * <p>
+ * A file consists of a fixed-size header holding the magic number, the version, flags, and the CRC32 checksum of
+ * the uncompressed body, followed by the body. If the {@link #FLAG_DEFLATE} flag is set, the body is compressed
+ * with a {@link Deflater}. The body is written and read as a stream, in this order:
+ * <ol>
+ * <li>the name and the feature names of the variant,</li>
+ * <li>the kind of the product AST ({@code -1} if the AST has been forgotten),</li>
+ * <li>the {@link FormulaDictionary} of the mappings of the AST nodes,</li>
+ * <li>the number of AST nodes, including the root, and the nodes in pre-order as parent index, type, code,
+ * mapping ID, sequence number, and position.</li>
+ * </ol>
+ * Strings are written when they first occur, as their new ID followed by the length and the UTF-8 bytes; later
+ * occurrences only write the ID. The main tree nodes of a variant are not stored, as they belong to the main tree;
+ * variants are cached before they are merged into it.
+ */
+public class ProductCodec {
+    /** The magic number at the start of each file, "TBPR". */
+    public static final int MAGIC = 0x54425052;
+    /** The version of the format written by this codec. */
+    public static final int VERSION = 1;
+    /** Flag indicating that the body is compressed. */
+    public static final byte FLAG_DEFLATE = 1;
+
+    static final int HEADER_SIZE = 2 * Integer.BYTES + Byte.BYTES + Long.BYTES;
+    private static final int CHECKSUM_OFFSET = 2 * Integer.BYTES + Byte.BYTES;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private ProductCodec() {
+    }
+
+    /**
+     * Writes the given variant to the given file.
+     *
+     * @param variant  the variant to write
+     * @param filePath the file to write to; an existing file is replaced
+     * @param compress whether the body is compressed
+     * @throws IOException if writing fails
+     */
+    public static void write(final Variant variant, final Path filePath, final boolean compress) throws IOException {
+        try (final FileChannel channel = FileChannel.open(filePath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.put(compress ? FLAG_DEFLATE : 0);
+            // the checksum is filled in when the body has been written
+            header.putLong(0);
+            header.flip();
+            writeFully(channel, header, 0);
+
+            final CRC32 checksum = new CRC32();
+            final OutputStream raw = Channels.newOutputStream(channel.position(HEADER_SIZE));
+            final Deflater deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+            final OutputStream body = compress ? new DeflaterOutputStream(raw, deflater, BUFFER_SIZE) : raw;
+            try {
+                final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        new CheckedOutputStream(body, checksum), BUFFER_SIZE));
+                new Encoder(out).write(variant);
+                out.flush();
+                if (compress) {
+                    ((DeflaterOutputStream) body).finish();
+                }
+            } finally {
+                if (deflater != null) {
+                    deflater.end();
+                }
+            }
+
+            final ByteBuffer checksumBuffer = ByteBuffer.allocate(Long.BYTES);
+            checksumBuffer.putLong(checksum.getValue());
+            checksumBuffer.flip();
+            writeFully(channel, checksumBuffer, CHECKSUM_OFFSET);
+        }
+    }
+
+    /**
+     * Reads a variant from the given file.
+     *
+     * @param filePath the file to read from
+     * @return the variant stored in the file, without main tree nodes
+     * @throws IOException if reading fails, the file is not a binary product of a supported version, its body is
+     *                     corrupt, or its checksum does not match
+     */
+    public static Variant read(final Path filePath) throws IOException {
+        try (final FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    throw new IOException("Not a binary product");
+                }
+            }
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a binary product");
+            }
+            final int version = header.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported product format version " + version + ", expected " + VERSION);
+            }
+            final boolean compressed = (header.get() & FLAG_DEFLATE) != 0;
+            final long expectedChecksum = header.getLong();
+
+            final CRC32 checksum = new CRC32();
+            final InputStream raw = Channels.newInputStream(channel);
+            final Inflater inflater = compressed ? new Inflater() : null;
+            try {
+                final InputStream body = compressed ? new InflaterInputStream(raw, inflater, BUFFER_SIZE) : raw;
+                final DataInputStream in = new DataInputStream(new BufferedInputStream(
+                        new CheckedInputStream(body, checksum), BUFFER_SIZE));
+                final Variant variant = new Decoder(in).read();
+                // consume the rest of the body, so that the checksum covers all of it
+                if (in.read() >= 0) {
+                    throw new IOException("Unexpected data after the product in " + filePath);
+                }
+                if (checksum.getValue() != expectedChecksum) {
+                    throw new IOException("Checksum mismatch in " + filePath);
+                }
+                return variant;
+            } finally {
+                if (inflater != null) {
+                    inflater.end();
+                }
+            }
+        }
+    }
+
+    private static void writeFully(final FileChannel channel, final ByteBuffer buffer, final long position)
+            throws IOException {
+        long filePosition = position;
+        while (buffer.hasRemaining()) {
+            filePosition += channel.write(buffer, filePosition);
+        }
+    }
+
+    /**
+     * Writes the body of a product, assigning IDs to strings as they occur.
+     */
+    private static class Encoder {
+        private final DataOutputStream out;
+        private final Map<String, Integer> stringIds = new HashMap<>();
+
+        private Encoder(final DataOutputStream out) {
+            this.out = out;
+        }
+
+        private void write(final Variant variant) throws IOException {
+            writeString(variant.getName());
+            out.writeInt(variant.getFeatures().size());
+            for (final Feature feature : variant.getFeatures()) {
+                writeString(feature.getName());
+            }
+
+            final AbstractAST ast = variant.getProductAst();
+            if (ast == null) {
+                out.writeByte(MainTreeCodec.NONE);
+                return;
+            }
+            out.writeByte(MainTreeCodec.astKind(ast));
+
+            // pre-order traversal with an explicit stack, as trees can be deep
+            final List<ASTNode> nodes = new ArrayList<>();
+            final Map<ASTNode, Integer> nodeIds = new IdentityHashMap<>();
+            final FormulaDictionary formulas = new FormulaDictionary(TraceBoosting.f);
+            final Deque<ASTNode> stack = new ArrayDeque<>();
+            stack.push(ast.getRoot());
+            while (!stack.isEmpty()) {
+                final ASTNode node = stack.pop();
+                nodeIds.put(node, nodes.size());
+                nodes.add(node);
+                if (node.getMapping() != null) {
+                    formulas.add(node.getMapping());
+                }
+                // in reverse, so that siblings are written in their order
+                final ChildSet children = node.getChildren();
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    stack.push(children.get(i));
+                }
+            }
+
+            final List<String> variables = formulas.getVariables();
+            out.writeInt(variables.size());
+            for (final String variable : variables) {
+                writeString(variable);
+            }
+            final int[] encodedNodes = formulas.getEncodedNodes();
+            out.writeInt(encodedNodes.length);
+            for (final int value : encodedNodes) {
+                out.writeInt(value);
+            }
+
+            out.writeInt(nodes.size());
+            for (final ASTNode node : nodes) {
+                final ASTNode parent = node.getParent();
+                out.writeInt(parent == null ? MainTreeCodec.NONE : nodeIds.get(parent));
+                out.writeByte(node.getType().ordinal());
+                writeString(node.getCode());
+                out.writeInt(node.getMapping() == null ? MainTreeCodec.NONE : formulas.add(node.getMapping()));
+                out.writeInt(node.getSequenceNumber());
+                writePosition(node.getStartPosition());
+            }
+        }
+
+        private void writeString(final String string) throws IOException {
+            if (string == null) {
+                out.writeInt(MainTreeCodec.NONE);
+                return;
+            }
+            final Integer id = stringIds.get(string);
+            if (id != null) {
+                out.writeInt(id);
+                return;
+            }
+            stringIds.put(string, stringIds.size());
+            out.writeInt(stringIds.size() - 1);
+            final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private void writePosition(final Position position) throws IOException {
+            if (position instanceof RootPosition) {
+                out.writeByte(MainTreeCodec.POSITION_ROOT);
+            } else if (position instanceof UnspecifiedPosition) {
+                out.writeByte(MainTreeCodec.POSITION_UNSPECIFIED);
+            } else if (position instanceof FilePosition) {
+                out.writeByte(MainTreeCodec.POSITION_FILE);
+                writeString(position.serializedPosition()[1]);
+            } else if (position instanceof LinePosition) {
+                out.writeByte(MainTreeCodec.POSITION_LINE);
+                writeString(position.serializedPosition()[1]);
+                out.writeInt(position.lineNumber());
+                out.writeInt(position.columnNumber());
+            } else {
+                throw new UnsupportedOperationException("Unsupported position type " + position.getClass().getName());
+            }
+        }
+    }
+
+    /**
+     * Reads the body of a product in the order in which it has been written. As the checksum can only be checked
+     * after the body has been read, every count, length, and reference is checked before it is used, and arrays are
+     * grown as their elements are read, so that a corrupt body fails with an IOException.
+     */
+    private static class Decoder {
+        private final DataInputStream in;
+        private final List<String> strings = new ArrayList<>();
+
+        private Decoder(final DataInputStream in) {
+            this.in = in;
+        }
+
+        private Variant read() throws IOException {
+            final String name = readRequiredString("variant name");
+            final int featureCount = readCount("features");
+            final CustomHashSet<Feature> features = new CustomHashSet<>();
+            for (int i = 0; i < featureCount; i++) {
+                features.add(new Feature(readRequiredString("feature name")));
+            }
+
+            final byte astKind = in.readByte();
+            if (astKind == MainTreeCodec.NONE) {
+                return new Variant(name, new CustomHashSet<>(), null, features);
+            }
+
+            final List<String> variables = new ArrayList<>();
+            final int variableCount = readCount("variables");
+            for (int i = 0; i < variableCount; i++) {
+                variables.add(readRequiredString("variable name"));
+            }
+            final int encodedNodeCount = readCount("formula nodes");
+            int[] encodedNodes = new int[Math.min(encodedNodeCount, BUFFER_SIZE)];
+            for (int i = 0; i < encodedNodeCount; i++) {
+                if (i == encodedNodes.length) {
+                    encodedNodes = Arrays.copyOf(encodedNodes, (int) Math.min(encodedNodeCount, 2L * i));
+                }
+                encodedNodes[i] = in.readInt();
+            }
+            final FormulaDictionary formulas = MainTreeCodec.decodeFormulas(variables, encodedNodes);
+
+            final ASTNode.NODE_TYPE[] typeValues = ASTNode.NODE_TYPE.values();
+            final int nodeCount = readCount("AST nodes");
+            if (nodeCount == 0) {
+                throw new IOException("The product AST has no root");
+            }
+            final List<ASTNode> nodes = new ArrayList<>(Math.min(nodeCount, BUFFER_SIZE));
+            final List<ASTNode> astNodes = new ArrayList<>(Math.min(nodeCount, BUFFER_SIZE));
+            for (int i = 0; i < nodeCount; i++) {
+                // only the root, which is the first node, has no parent; parents precede their children
+                final int parentId = in.readInt();
+                if (i == 0 ? parentId != MainTreeCodec.NONE : parentId < 0 || parentId >= i) {
+                    throw new IOException("Invalid parent " + parentId + " of AST node " + i);
+                }
+                final ASTNode parent = parentId == MainTreeCodec.NONE ? null : nodes.get(parentId);
+                final byte typeOrdinal = in.readByte();
+                if (typeOrdinal < 0 || typeOrdinal >= typeValues.length) {
+                    throw new IOException("Unknown node type " + typeOrdinal);
+                }
+                final String code = readString();
+                final int mappingId = in.readInt();
+                if (mappingId != MainTreeCodec.NONE && (mappingId < 0 || mappingId >= formulas.size())) {
+                    throw new IOException("Unknown mapping " + mappingId);
+                }
+                final int sequenceNumber = in.readInt();
+                final ASTNode node = new ASTNode(parent, code, readPosition(), typeValues[typeOrdinal],
+                        mappingId == MainTreeCodec.NONE ? null : formulas.get(mappingId));
+                node.setSequenceNumber(sequenceNumber);
+                if (parent != null) {
+                    // add directly, as the sequence numbers have already been assigned
+                    parent.getChildren().add(node);
+                    astNodes.add(node);
+                }
+                nodes.add(node);
+            }
+
+            final AbstractAST ast;
+            switch (astKind) {
+                case MainTreeCodec.AST_C:
+                    ast = new CAST(nodes.get(0), astNodes);
+                    break;
+                case MainTreeCodec.AST_JAVA:
+                    ast = new JavaAST(nodes.get(0), astNodes);
+                    break;
+                case MainTreeCodec.AST_LINES:
+                    ast = new LineAST(nodes.get(0), astNodes);
+                    break;
+                default:
+                    throw new IOException("Unknown AST type " + astKind);
+            }
+            return new Variant(name, new CustomHashSet<>(), ast, features);
+        }
+
+        private String readString() throws IOException {
+            final int id = in.readInt();
+            if (id == MainTreeCodec.NONE) {
+                return null;
+            }
+            if (id < 0 || id > strings.size()) {
+                throw new IOException("Unexpected string ID " + id);
+            }
+            if (id < strings.size()) {
+                return strings.get(id);
+            }
+            final int length = readCount("bytes of a string");
+            // read in chunks rather than allocating the length up front, which may be corrupt
+            final byte[] bytes = in.readNBytes(length);
+            if (bytes.length != length) {
+                throw new EOFException("The product ends within a string");
+            }
+            final String string = new String(bytes, StandardCharsets.UTF_8);
+            strings.add(string);
+            return string;
+        }
+
+        private String readRequiredString(final String what) throws IOException {
+            final String string = readString();
+            if (string == null) {
+                throw new IOException("Missing " + what);
+            }
+            return string;
+        }
+
+        private int readCount(final String what) throws IOException {
+            final int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Invalid number of " + what + ": " + count);
+            }
+            return count;
+        }
+
+        private Position readPosition() throws IOException {
+            final byte kind = in.readByte();
+            switch (kind) {
+                case MainTreeCodec.POSITION_ROOT:
+                    return RootPosition.INSTANCE;
+                case MainTreeCodec.POSITION_UNSPECIFIED:
+                    return UnspecifiedPosition.INSTANCE;
+                case MainTreeCodec.POSITION_FILE:
+                    return new FilePosition(readRequiredString("file path"));
+                case MainTreeCodec.POSITION_LINE: {
+                    final String path = readRequiredString("file path");
+                    final int line = in.readInt();
+                    return new LinePosition(path, line, in.readInt());
+                }
+                default:
+                    throw new IOException("Unknown position type " + kind);
+            }
+        }
+    }
+}
@@ -1,13 +1,13 @@
 package org.variantsync.boosting.position;
 
 import java.nio.file.Path;
-import java.util.Objects;
 
 /**
  * Represents the location of a file.
  */
 public class FilePosition extends Position {
-    private final String path;
+    // the handle of the path in the PathTable
+    private final int path;
 
     /**
      * Constructs a new FilePosition object with the specified file path.
@@ -15,7 +15,7 @@ public class FilePosition extends Position {
      * @param path The path of the file
      */
     public FilePosition(final String path) {
-        this.path = path;
+        this.path = PathTable.intern(path);
     }
 
     /**
@@ -31,7 +31,7 @@ public class FilePosition extends Position {
         if (!(o instanceof FilePosition))
             return false;
         final FilePosition that = (FilePosition) o;
-        return Objects.equals(path, that.path);
+        return path == that.path;
     }
 
     /**
@@ -41,7 +41,7 @@ public class FilePosition extends Position {
      */
     @Override
     public String[] serializedPosition() {
-        return new String[] { "FILE", path };
+        return new String[] { "FILE", PathTable.path(path) };
     }
 
     /**
@@ -51,7 +51,7 @@ public class FilePosition extends Position {
      */
     @Override
     public Path filePath() {
-        return Path.of(path);
+        return Path.of(PathTable.path(path));
     }
 
     /**
@@ -81,6 +81,7 @@ public class FilePosition extends Position {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(path);
+        // equal to Objects.hash(path)
+        return 31 + PathTable.hashCode(path);
     }
 }
@@ -1,13 +1,13 @@
 package org.variantsync.boosting.position;
 
 import java.nio.file.Path;
-import java.util.Objects;
 
 /**
  * Represents a position in a file with line and column numbers.
  */
 public class LinePosition extends Position {
-    private final String filePosition;
+    // the handle of the file path in the PathTable
+    private final int filePosition;
     private final int lineNumber;
     private final int columnNumber;
 
@@ -20,7 +20,7 @@ public class LinePosition extends Position {
      * @param columnNumber the column number
      */
     public LinePosition(final String filePosition, final int lineNumber, final int columnNumber) {
-        this.filePosition = filePosition;
+        this.filePosition = PathTable.intern(filePosition);
         this.lineNumber = lineNumber;
         this.columnNumber = columnNumber;
     }
@@ -39,7 +39,7 @@ public class LinePosition extends Position {
             return false;
         final LinePosition that = (LinePosition) o;
         return lineNumber == that.lineNumber && columnNumber == that.columnNumber
-                && Objects.equals(filePosition, that.filePosition);
+                && filePosition == that.filePosition;
     }
 
     /**
@@ -49,7 +49,8 @@ public class LinePosition extends Position {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(filePosition, lineNumber, columnNumber);
+        // equal to Objects.hash(path, lineNumber, columnNumber)
+        return ((31 + PathTable.hashCode(filePosition)) * 31 + lineNumber) * 31 + columnNumber;
     }
 
     /**
@@ -59,7 +60,8 @@ public class LinePosition extends Position {
      */
     @Override
     public String[] serializedPosition() {
-        return new String[] { "LINE", filePosition, String.valueOf(lineNumber), String.valueOf(columnNumber) };
+        return new String[] { "LINE", PathTable.path(filePosition), String.valueOf(lineNumber),
+                String.valueOf(columnNumber) };
     }
 
     /**
@@ -69,7 +71,7 @@ public class LinePosition extends Position {
      */
     @Override
     public Path filePath() {
-        return Path.of(filePosition);
+        return Path.of(PathTable.path(filePosition));
     }
 
     /**
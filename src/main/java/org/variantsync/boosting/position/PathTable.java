@@ -0,0 +1,70 @@
+package org.variantsync.boosting.position;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns the file paths of positions.
+ * <p>
+ * Each distinct path is stored once and referenced by an int handle, so that the many positions within a file
+ * share one copy of its path and compare their paths by handle. Handles are only valid within the running JVM;
+ * positions are serialized with their paths. The table only grows, which is fine as it holds one entry per file
+ * rather than per line. The null path has the handle -1.
+ */
+public final class PathTable {
+    private static final ConcurrentHashMap<String, Integer> handles = new ConcurrentHashMap<>();
+    // written under the lock; a handle is published through the map after its path has been stored
+    private static volatile String[] paths = new String[1024];
+    private static int size;
+
+    private PathTable() {
+    }
+
+    /**
+     * Returns the handle of a path, adding the path to the table if necessary.
+     *
+     * @param path the path, or null
+     * @return the handle of the path
+     */
+    public static int intern(final String path) {
+        if (path == null) {
+            return -1;
+        }
+        final Integer handle = handles.get(path);
+        if (handle != null) {
+            return handle;
+        }
+        synchronized (PathTable.class) {
+            final Integer existing = handles.get(path);
+            if (existing != null) {
+                return existing;
+            }
+            if (size == paths.length) {
+                paths = Arrays.copyOf(paths, size * 2);
+            }
+            paths[size] = path;
+            handles.put(path, size);
+            return size++;
+        }
+    }
+
+    /**
+     * Returns the path of a handle.
+     *
+     * @param handle a handle returned by {@link #intern(String)}
+     * @return the path
+     */
+    public static String path(final int handle) {
+        return handle < 0 ? null : paths[handle];
+    }
+
+    /**
+     * Returns the hash code of the path of a handle, which is 0 for the null path.
+     *
+     * @param handle a handle returned by {@link #intern(String)}
+     * @return the hash code of the path
+     */
+    public static int hashCode(final int handle) {
+        return handle < 0 ? 0 : paths[handle].hashCode();
+    }
+}
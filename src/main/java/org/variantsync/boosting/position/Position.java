@@ -1,5 +1,6 @@
 package org.variantsync.boosting.position;
 
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.nio.file.Path;
 
@@ -85,4 +86,29 @@ public abstract class Position implements Serializable {
      * @return the column number of the Position object
      */
     public abstract int columnNumber();
+
+    /**
+     * Replaces this position by its serialized representation when it is written to an object stream, as the
+     * path handles of file and line positions are only valid within the running JVM.
+     *
+     * @return the serializable form of this position
+     */
+    protected Object writeReplace() throws ObjectStreamException {
+        return new SerializedPosition(serializedPosition());
+    }
+
+    /**
+     * The serializable form of a position.
+     */
+    private static class SerializedPosition implements Serializable {
+        private final String[] serializedPosition;
+
+        private SerializedPosition(final String[] serializedPosition) {
+            this.serializedPosition = serializedPosition;
+        }
+
+        private Object readResolve() throws ObjectStreamException {
+            return fromSerializedPosition(serializedPosition);
+        }
+    }
 }
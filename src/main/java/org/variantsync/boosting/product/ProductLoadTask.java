@@ -2,17 +2,17 @@ package org.variantsync.boosting.product;
 
 import org.tinylog.Logger;
 
-import java.io.FileInputStream;
+import org.variantsync.boosting.persistence.ProductCodec;
+
 import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.util.concurrent.Callable;
 
 /**
  * A Callable task that loads a product from a given file path.
- * The task reads the product object from the file using ObjectInputStream and
- * returns a LoadResult object.
+ * The task reads the product from a file in the binary format of
+ * {@link ProductCodec} and returns a LoadResult object.
  */
 public class ProductLoadTask implements Callable<ProductLoadTask.LoadResult> {
     private static int processedCount = 0;
@@ -35,23 +35,20 @@ public class ProductLoadTask implements Callable<ProductLoadTask.LoadResult> {
      * 
      * @return LoadResult An object containing the loaded product ID and product
      *         object
-     * @throws UncheckedIOException If an IOException occurs while reading the file
-     * @throws RuntimeException     If the Product class is not found
+     * @throws UncheckedIOException If an IOException occurs while reading the file, e.g., if it is not in the
+     *                              binary format
      */
     @Override
     public LoadResult call() throws Exception {
-        try (final ObjectInputStream in = new ObjectInputStream(new FileInputStream(productPath.toFile()))) {
-            synchronized (ProductLoadTask.class) {
-                Logger.info("#" + processedCount + ": Loading product " + id + " from " + productPath);
-                processedCount++;
-            }
-            return new LoadResult(id, (Variant) in.readObject());
+        synchronized (ProductLoadTask.class) {
+            Logger.info("#" + processedCount + ": Loading product " + id + " from " + productPath);
+            processedCount++;
+        }
+        try {
+            return new LoadResult(id, ProductCodec.read(productPath));
         } catch (final IOException e) {
             Logger.error("Was not able to read file: ", e);
             throw new UncheckedIOException(e);
-        } catch (final ClassNotFoundException e) {
-            Logger.error("Product class not found", e);
-            throw new RuntimeException(e);
         }
     }
 
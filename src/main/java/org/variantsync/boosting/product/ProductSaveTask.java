@@ -2,9 +2,9 @@ package org.variantsync.boosting.product;
 
 import org.tinylog.Logger;
 
-import java.io.FileOutputStream;
+import org.variantsync.boosting.persistence.ProductCodec;
+
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -12,12 +12,14 @@ import java.nio.file.Paths;
 /**
  * A class representing a task to save a product to a file.
  * This class implements the Runnable interface to be executed as a thread.
+ * Products are written in the binary format of {@link ProductCodec}.
  */
 public class ProductSaveTask implements Runnable {
     private static int processedCount = 0;
     private final Variant variant;
     private final String folderName;
     private final int id;
+    private final boolean compress;
 
     /**
      * Constructor for ProductSaveTask.
@@ -27,9 +29,22 @@ public class ProductSaveTask implements Runnable {
      * @param id         The unique identifier of the product.
      */
     public ProductSaveTask(final Variant variant, final String folderName, final int id) {
+        this(variant, folderName, id, false);
+    }
+
+    /**
+     * Constructor for ProductSaveTask.
+     *
+     * @param variant    The product to be saved.
+     * @param folderName The name of the folder where the product will be saved.
+     * @param id         The unique identifier of the product.
+     * @param compress   Whether the product file is compressed.
+     */
+    public ProductSaveTask(final Variant variant, final String folderName, final int id, final boolean compress) {
         this.variant = variant;
         this.folderName = folderName;
         this.id = id;
+        this.compress = compress;
     }
 
     /**
@@ -50,8 +65,8 @@ public class ProductSaveTask implements Runnable {
             Logger.error("Was not able to create directories for " + folderName, e);
             throw new UncheckedIOException(e);
         }
-        try (final ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(filePath))) {
-            out.writeObject(variant);
+        try {
+            ProductCodec.write(variant, Paths.get(filePath), compress);
         } catch (final IOException e) {
             Logger.error("Was not able to write products to " + filePath, e);
             throw new UncheckedIOException(e);
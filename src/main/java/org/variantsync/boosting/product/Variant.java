@@ -2,20 +2,28 @@ package org.variantsync.boosting.product;
 
 import org.variantsync.boosting.TraceBoosting;
 import org.variantsync.boosting.datastructure.ASTNode;
+import org.variantsync.boosting.datastructure.ChildSet;
 import org.variantsync.boosting.datastructure.CustomHashSet;
 import org.variantsync.boosting.datastructure.Feature;
+import org.variantsync.boosting.datastructure.FormulaDictionary;
+import org.variantsync.boosting.datastructure.MainTree;
 import org.variantsync.boosting.parsing.AbstractAST;
 import org.variantsync.boosting.parsing.JavaAST;
 import org.variantsync.boosting.parsing.LineAST;
 import org.variantsync.boosting.position.Position;
+import org.variantsync.boosting.position.ProductPosition;
 
 import org.logicng.formulas.Formula;
-import org.logicng.io.parsers.ParserException;
 
 import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -32,6 +40,11 @@ public class Variant implements Serializable {
     // the AST nodes of the main tree that correspond to the AST nodes of the
     // variant AST
     private CustomHashSet<ASTNode> astNodesMainTree;
+    // the nodes of the variant AST at each position, in the order of their ids; built on first use
+    private transient Map<Position, List<ASTNode>> positionIndex;
+    // the main tree node into which the first node at each position of the variant AST has been merged; unlike the
+    // AST, it is kept when the AST is forgotten
+    private transient Map<Position, ASTNode> mainTreeNodes;
 
     /**
      * Constructs a new Variant object with the given parameters.
@@ -78,11 +91,10 @@ public class Variant implements Serializable {
         this.astNodesMainTree = new CustomHashSet<>(astNodes);
 
         // Copy the ASTNodes from the other Variant object and update the tree
-        final CustomHashSet<ASTNode> treeNodes = new CustomHashSet<>(
-                other.productAST.getAstNodes()
-                        .stream()
-                        .map(originalToCopyMap::get)
-                        .collect(Collectors.toCollection(CustomHashSet::new)));
+        final List<ASTNode> treeNodes = other.productAST.getAstNodes()
+                .stream()
+                .map(originalToCopyMap::get)
+                .collect(Collectors.toList());
 
         // Create a new productAST object based on the type of the other Variant
         // object's productAST
@@ -101,10 +113,12 @@ public class Variant implements Serializable {
     }
 
     /**
-     * Clears the variant's Abstract Syntax Tree (AST) by setting it to null.
+     * Clears the variant's Abstract Syntax Tree (AST) by setting it to null. The main tree nodes into which its
+     * nodes have been merged can still be looked up by position.
      */
     public void forgetAST() {
         this.productAST = null;
+        this.positionIndex = null;
     }
 
     /**
@@ -136,19 +150,23 @@ public class Variant implements Serializable {
      *         found
      */
     public Formula getMappingFromPosition(final Position position) {
-        // look for the right node in the variant's AST's nodes
-        for (final ASTNode oldNode : productAST.getAstNodes()) {
-            if (position.equals(oldNode.getStartPosition())) {
-                // find and return the mapping of the corresponding node in the main tree
-                for (final ASTNode newNode : astNodesMainTree) {
-                    if (newNode.isSimilar(oldNode)) {
-                        return newNode.getMapping();
-                    }
-                }
-            }
+        final ASTNode node = getNodeFromPosition(position);
+        return node == null ? null : node.getMapping();
+    }
+
+    /**
+     * Returns the mappings of the nodes at the given positions, like {@link #getMappingFromPosition(Position)}.
+     *
+     * @param positions the positions of the nodes
+     * @return the mapping for each position, or null for positions at which no node is found
+     */
+    public List<Formula> getMappingsFromPositions(final List<Position> positions) {
+        final List<Formula> mappings = new ArrayList<>(positions.size());
+        for (final Position position : positions) {
+            final ASTNode node = findMainTreeNode(position);
+            mappings.add(node == null ? null : node.getMapping());
         }
-        System.out.println("No node with given position");
-        return null;
+        return mappings;
     }
 
     /**
@@ -167,21 +185,102 @@ public class Variant implements Serializable {
      *
      * @param position The position to search for in the variant's AST.
      * @return The ASTNode at the given position in the variant's AST, or the
-     *         corresponding node in the main tree if merged.
+     *         corresponding node in the main tree if merged, or null if no node
+     *         is found at the position.
      */
     public ASTNode getNodeFromPosition(final Position position) {
-        // look for the right node in the variant's AST's nodes
-        for (final ASTNode oldNode : productAST.getAstNodes()) {
-            if (position.equals(oldNode.getStartPosition())) {
-                // find and return the corresponding node in the main tree
-                for (final ASTNode newNode : astNodesMainTree) {
-                    if (newNode.isSimilar(oldNode)) {
-                        return newNode;
+        return findMainTreeNode(position);
+    }
+
+    /**
+     * Returns the nodes at the given positions, like {@link #getNodeFromPosition(Position)}.
+     *
+     * @param positions the positions of the nodes
+     * @return the node for each position, or null for positions at which no node is found
+     */
+    public List<ASTNode> getNodesFromPositions(final List<Position> positions) {
+        final List<ASTNode> nodes = new ArrayList<>(positions.size());
+        for (final Position position : positions) {
+            nodes.add(findMainTreeNode(position));
+        }
+        return nodes;
+    }
+
+    /**
+     * Records the main tree node into which a node of the variant AST has been merged. Called by
+     * {@link org.variantsync.boosting.datastructure.MainTree#unite(Variant)}.
+     *
+     * @param productNode  the node of the variant AST
+     * @param mainTreeNode the corresponding node of the main tree
+     */
+    public void setMainTreeNode(final ASTNode productNode, final ASTNode mainTreeNode) {
+        if (productAST == null || !productAST.getAstNodes().contains(productNode)) {
+            return;
+        }
+        if (mainTreeNodes == null) {
+            mainTreeNodes = new HashMap<>();
+        }
+        // the main tree is merged in pre-order, so the first recorded node at a position has the smallest id
+        mainTreeNodes.putIfAbsent(productNode.getStartPosition(), mainTreeNode);
+    }
+
+    /**
+     * Restores the main tree nodes into which the nodes of this variant have been merged from the product positions
+     * of the main tree, e.g., when the computation is resumed from a checkpoint that already covers this variant.
+     *
+     * @param mainTree the main tree into which this variant has been merged
+     */
+    public void restoreMainTreeNodes(final MainTree mainTree) {
+        mainTreeNodes = new HashMap<>();
+        // in pre-order, so that the outermost node at a position is recorded, like during the merge
+        final Deque<ASTNode> stack = new ArrayDeque<>();
+        stack.push(mainTree.getTree().getRoot());
+        while (!stack.isEmpty()) {
+            final ASTNode node = stack.pop();
+            final Set<ProductPosition> productPositions = mainTree.getProductPositions(node);
+            if (productPositions != null) {
+                for (final ProductPosition productPosition : productPositions) {
+                    if (name.equals(productPosition.variant.getName())) {
+                        mainTreeNodes.putIfAbsent(productPosition.position, node);
                     }
                 }
             }
+            final ChildSet children = node.getChildren();
+            for (int i = children.size() - 1; i >= 0; i--) {
+                stack.push(children.get(i));
+            }
+        }
+    }
+
+    private ASTNode findMainTreeNode(final Position position) {
+        if (mainTreeNodes != null) {
+            // the node has been merged by this JVM, which recorded the corresponding node
+            final ASTNode mainTreeNode = mainTreeNodes.get(position);
+            if (mainTreeNode != null) {
+                return mainTreeNode;
+            }
+        }
+        if (productAST == null || astNodesMainTree == null) {
+            return null;
+        }
+        if (positionIndex == null) {
+            positionIndex = new HashMap<>();
+            for (final ASTNode node : productAST.getAstNodes()) {
+                positionIndex.computeIfAbsent(node.getStartPosition(), p -> new ArrayList<>(1)).add(node);
+            }
+        }
+        final List<ASTNode> productNodes = positionIndex.get(position);
+        if (productNodes == null) {
+            return null;
+        }
+        for (final ASTNode productNode : productNodes) {
+            // e.g., after the main tree has been loaded from a file, or for nodes without a recorded link
+            for (final ASTNode mainTreeNode : astNodesMainTree) {
+                if (mainTreeNode.isSimilar(productNode)) {
+                    return mainTreeNode;
+                }
+            }
         }
-        System.out.println("No node with given position");
         return null;
     }
 
@@ -205,10 +304,12 @@ public class Variant implements Serializable {
 
     private static Map<ASTNode, ASTNode> copyAstNodes(final CustomHashSet<ASTNode> astNodes) {
         final Map<ASTNode, ASTNode> originalToCopyMap = new HashMap<>();
+        // mappings shared by many nodes are copied only once
+        final FormulaDictionary mappings = new FormulaDictionary(TraceBoosting.f);
         for (final var node : astNodes) {
             final ASTNode nodeCopy;
             if (!originalToCopyMap.containsKey(node)) {
-                nodeCopy = copyNode(node);
+                nodeCopy = copyNode(node, mappings);
                 originalToCopyMap.put(node, nodeCopy);
             } else {
                 nodeCopy = originalToCopyMap.get(node);
@@ -222,7 +323,7 @@ public class Variant implements Serializable {
                 } else {
                     final ASTNode parentCopy;
                     if (!originalToCopyMap.containsKey(parent)) {
-                        parentCopy = copyNode(parent);
+                        parentCopy = copyNode(parent, mappings);
                         originalToCopyMap.put(parent, parentCopy);
                     } else {
                         parentCopy = originalToCopyMap.get(parent);
@@ -234,11 +335,11 @@ public class Variant implements Serializable {
             // Handle children
             {
                 final var children = node.getChildren();
-                final CustomHashSet<ASTNode> childrenOfCopy = nodeCopy.getChildren();
+                final ChildSet childrenOfCopy = nodeCopy.getChildren();
                 for (final var child : children) {
                     final ASTNode childCopy;
                     if (!originalToCopyMap.containsKey(child)) {
-                        childCopy = copyNode(child);
+                        childCopy = copyNode(child, mappings);
                         originalToCopyMap.put(child, childCopy);
                     } else {
                         childCopy = originalToCopyMap.get(child);
@@ -255,7 +356,7 @@ public class Variant implements Serializable {
                     nodeCopy.setProductEquivalent(null);
                 } else {
                     if (!originalToCopyMap.containsKey(productEquivalent)) {
-                        productEquivalentCopy = copyNode(productEquivalent);
+                        productEquivalentCopy = copyNode(productEquivalent, mappings);
                         originalToCopyMap.put(productEquivalent, productEquivalentCopy);
                     } else {
                         productEquivalentCopy = originalToCopyMap.get(productEquivalent);
@@ -267,18 +368,12 @@ public class Variant implements Serializable {
         return originalToCopyMap;
     }
 
-    private static ASTNode copyNode(final ASTNode node) {
-        try {
-            final Formula mapping;
-            if (node.getMapping() == null) {
-                mapping = null;
-            } else {
-                mapping = TraceBoosting.f.parse(node.getMapping().toString());
-            }
-            return new ASTNode(null, node.getCode(), node.getStartPosition(), node.getType(), mapping);
-        } catch (final ParserException e) {
-            throw new RuntimeException("Was not able to parse mapping.");
-        }
+    private static ASTNode copyNode(final ASTNode node, final FormulaDictionary mappings) {
+        final ASTNode copy = new ASTNode(null, node.getCode(), node.getStartPosition(), node.getType(),
+                mappings.copy(node.getMapping()));
+        // the copy keeps the sequence number, so that it stays similar to the original
+        copy.setSequenceNumber(node.getSequenceNumber());
+        return copy;
     }
 
     @Override
@@ -7,16 +7,21 @@ import org.variantsync.boosting.datastructure.Feature;
 import org.variantsync.boosting.parsing.AbstractAST;
 import org.variantsync.boosting.parsing.CAST;
 import org.variantsync.boosting.parsing.ESupportedLanguages;
+import org.variantsync.boosting.parsing.GitRevision;
+import org.variantsync.boosting.parsing.IngestionFilter;
 import org.variantsync.boosting.parsing.JavaAST;
 import org.variantsync.boosting.parsing.LineAST;
+import org.variantsync.boosting.parsing.ParseOptions;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
 
 /**
  * A Callable task for initializing a product with the given parameters.
@@ -29,6 +34,11 @@ public class VariantInitTask implements Callable<VariantInitTask.InitResult> {
     private final File sourcePath;
     private final CustomHashSet<Feature> allFeatures;
     private final ESupportedLanguages usedLanguage;
+    private final ParseOptions parseOptions;
+    // the filter of the passport, which takes precedence over the filter of the parse options
+    private final IngestionFilter ingestionFilter;
+    // the revision from which the sources and the configuration are read, or null to read them from the file system
+    private final GitRevision gitRevision;
 
     /**
      * Initializes a ProductInitializationTask with the given product number,
@@ -41,12 +51,33 @@ public class VariantInitTask implements Callable<VariantInitTask.InitResult> {
      */
     public VariantInitTask(final int productNumber, final VariantPassport passport,
                            final ESupportedLanguages targetLanguage) {
+        this(productNumber, passport, targetLanguage, new ParseOptions());
+    }
+
+    /**
+     * Initializes a ProductInitializationTask with the given product number,
+     * product passport, and target language. The files of the variant are
+     * parsed with the given options.
+     *
+     * @param productNumber  the product number to assign to the task
+     * @param passport       the product passport containing information about the
+     *                       product
+     * @param targetLanguage the target language for the task
+     * @param parseOptions   the options with which the files are parsed,
+     *                       usually shared by all variants; the ingestion
+     *                       filter of the passport takes precedence
+     */
+    public VariantInitTask(final int productNumber, final VariantPassport passport,
+                           final ESupportedLanguages targetLanguage, final ParseOptions parseOptions) {
         this.productNumber = productNumber;
         this.productName = passport.getName();
         this.configPath = passport.getConfiguration().toFile();
-        this.sourcePath = passport.getSourcesRoot().toFile();
+        this.sourcePath = passport.getSourcesRoot() == null ? null : passport.getSourcesRoot().toFile();
         this.allFeatures = new CustomHashSet<>();
         this.usedLanguage = targetLanguage;
+        this.parseOptions = parseOptions;
+        this.ingestionFilter = passport.getIngestionFilter();
+        this.gitRevision = passport.getGitRevision();
     }
 
     /**
@@ -65,7 +96,13 @@ public class VariantInitTask implements Callable<VariantInitTask.InitResult> {
     public InitResult call() throws Exception {
         Logger.info("Parsing variant " + productNumber + "...");
         List<String> featureStrings = new ArrayList<>();
-        if (configPath.exists()) {
+        if (gitRevision != null) {
+            final byte[] config = gitRevision.getRepository().readFile(gitRevision.getRevision(),
+                    configPath.getPath().replace(File.separatorChar, '/'));
+            if (config != null) {
+                featureStrings = new String(config, StandardCharsets.UTF_8).lines().collect(Collectors.toList());
+            }
+        } else if (configPath.exists()) {
             try {
                 featureStrings = Files.readAllLines(configPath.toPath());
             } catch (final IOException ex) {
@@ -79,23 +116,34 @@ public class VariantInitTask implements Callable<VariantInitTask.InitResult> {
             productFeatures.add(newFeature);
             allFeatures.add(newFeature);
         }
+        // the options are only copied now, as they may have been changed since this task was created
+        final ParseOptions parseOptions;
+        if (ingestionFilter == null) {
+            parseOptions = this.parseOptions;
+        } else {
+            parseOptions = new ParseOptions(this.parseOptions);
+            parseOptions.setIngestionFilter(ingestionFilter);
+        }
         final AbstractAST productAst;
         try {
             switch (usedLanguage) {
                 case C:
-                    productAst = new CAST(sourcePath);
+                    productAst = gitRevision != null ? new CAST(gitRevision, parseOptions)
+                            : new CAST(sourcePath, parseOptions);
                     break;
                 case JAVA:
-                    productAst = new JavaAST(sourcePath);
+                    productAst = gitRevision != null ? new JavaAST(gitRevision, parseOptions)
+                            : new JavaAST(sourcePath, parseOptions);
                     break;
                 case LINES:
-                    productAst = new LineAST(sourcePath);
+                    productAst = gitRevision != null ? new LineAST(gitRevision, parseOptions)
+                            : new LineAST(sourcePath, parseOptions);
                     break;
                 default:
                     throw new IllegalStateException("Unexpected value: " + usedLanguage);
             }
         } catch (final Exception e) {
-            throw new RuntimeException("Was not able to parse " + sourcePath, e);
+            throw new RuntimeException("Was not able to parse " + (gitRevision != null ? gitRevision : sourcePath), e);
         }
 
         return new InitResult(productNumber, allFeatures,
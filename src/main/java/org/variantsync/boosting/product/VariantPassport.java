@@ -1,15 +1,26 @@
 package org.variantsync.boosting.product;
 
+import org.variantsync.boosting.parsing.GitRevision;
+import org.variantsync.boosting.parsing.IngestionFilter;
+
 import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * The ProductPassport collects the information about the product name,
  * sources root, and configuration path.
+ * <p>
+ * The sources root is either a folder or an archive that contains the sources,
+ * optionally followed by a folder within the archive, e.g.,
+ * {@code snapshots/variant1.tar.gz/src}. Zip, jar, tar, and gzip-compressed tar
+ * archives are read without extracting them.
  */
 public class VariantPassport {
     private final String name;
     private final Path sourcesRoot;
     private final Path configuration;
+    private final IngestionFilter ingestionFilter;
+    private final GitRevision gitRevision;
 
     /**
      * Constructs a new ProductPassport with the given name, sources root, and
@@ -20,15 +31,54 @@ public class VariantPassport {
      * @param configuration the path to the product configuration
      */
     public VariantPassport(final String name, final Path sourcesRoot, final Path configuration) {
+        this(name, sourcesRoot, configuration, null);
+    }
+
+    /**
+     * Constructs a new ProductPassport with the given name, sources root, and
+     * configuration path, whose files are ingested through the given filter.
+     *
+     * @param name            the name of the product
+     * @param sourcesRoot     the root path for the product sources
+     * @param configuration   the path to the product configuration
+     * @param ingestionFilter the filter for the files of the product, or null to
+     *                        use the filter of the TraceBoosting instance
+     */
+    public VariantPassport(final String name, final Path sourcesRoot, final Path configuration,
+                           final IngestionFilter ingestionFilter) {
         this.name = name;
         this.sourcesRoot = sourcesRoot;
         this.configuration = configuration;
+        this.ingestionFilter = ingestionFilter;
+        this.gitRevision = null;
+    }
+
+    /**
+     * Constructs a new ProductPassport whose sources and configuration are read
+     * from a revision of a git repository, without checking the revision out.
+     *
+     * @param name            the name of the product
+     * @param sources         the revision and the folder of the product sources
+     * @param configuration   the path of the product configuration in the tree
+     *                        of the revision, relative to the root of the
+     *                        repository
+     * @param ingestionFilter the filter for the files of the product, or null to
+     *                        use the filter of the TraceBoosting instance
+     */
+    public VariantPassport(final String name, final GitRevision sources, final String configuration,
+                           final IngestionFilter ingestionFilter) {
+        this.name = name;
+        this.sourcesRoot = null;
+        this.configuration = Paths.get(configuration);
+        this.ingestionFilter = ingestionFilter;
+        this.gitRevision = sources;
     }
 
     /**
      * Returns the root path for the product sources.
      *
-     * @return the root path for the product sources
+     * @return the root path for the product sources, or null if the sources
+     *         are read from a git revision
      */
     public Path getSourcesRoot() {
         return sourcesRoot;
@@ -37,7 +87,8 @@ public class VariantPassport {
     /**
      * Returns the path to the product configuration.
      *
-     * @return the path to the product configuration
+     * @return the path to the product configuration, which is relative to the
+     *         root of the repository if the sources are read from a git revision
      */
     public Path getConfiguration() {
         return configuration;
@@ -51,4 +102,23 @@ public class VariantPassport {
     public String getName() {
         return name;
     }
+
+    /**
+     * Returns the filter for the files of the product.
+     *
+     * @return the filter, or null if the filter of the TraceBoosting instance is used
+     */
+    public IngestionFilter getIngestionFilter() {
+        return ingestionFilter;
+    }
+
+    /**
+     * Returns the git revision from which the product sources and configuration
+     * are read.
+     *
+     * @return the revision, or null if the sources are read from the file system
+     */
+    public GitRevision getGitRevision() {
+        return gitRevision;
+    }
 }
@@ -0,0 +1,67 @@
+package org.variantsync.boosting.product;
+
+import org.variantsync.boosting.datastructure.ASTNode;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of reproducing a variant from the computed mappings: the main tree nodes that the projection of the
+ * variant's configuration selects although they do not correspond to nodes of the variant (false positives), and the
+ * nodes that correspond to nodes of the variant but are not selected (false negatives).
+ */
+public class VariantValidation {
+    private final String variantName;
+    private final List<ASTNode> falsePositives;
+    private final List<ASTNode> falseNegatives;
+
+    /**
+     * Constructs the VariantValidation of a variant.
+     *
+     * @param variantName    the name of the variant
+     * @param falsePositives the selected nodes that do not correspond to nodes of the variant
+     * @param falseNegatives the nodes of the variant that are not selected
+     */
+    public VariantValidation(final String variantName, final List<ASTNode> falsePositives,
+                             final List<ASTNode> falseNegatives) {
+        this.variantName = variantName;
+        this.falsePositives = Collections.unmodifiableList(falsePositives);
+        this.falseNegatives = Collections.unmodifiableList(falseNegatives);
+    }
+
+    /**
+     * Returns the name of the variant.
+     */
+    public String getVariantName() {
+        return variantName;
+    }
+
+    /**
+     * Returns the main tree nodes that are selected by the configuration of the variant, but do not correspond to
+     * nodes of the variant.
+     */
+    public List<ASTNode> getFalsePositives() {
+        return falsePositives;
+    }
+
+    /**
+     * Returns the main tree nodes that correspond to nodes of the variant, but are not selected by its
+     * configuration.
+     */
+    public List<ASTNode> getFalseNegatives() {
+        return falseNegatives;
+    }
+
+    /**
+     * Returns whether the mappings reproduce the variant exactly.
+     */
+    public boolean isReproduced() {
+        return falsePositives.isEmpty() && falseNegatives.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return variantName + ": " + falsePositives.size() + " false positives, " + falseNegatives.size()
+                + " false negatives";
+    }
+}